@@ -0,0 +1,127 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.example.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.ColumnarDataset;
+import models.Employee;
+import models.EmployeeWithProject;
+import models.SolutionResult;
+import services.CsvReader;
+import services.SolutionsService;
+
+/**
+ * Throughput of each pipeline stage and of the whole Main run, on synthetic files written by
+ * SyntheticDataGenerator. Console output is discarded while measuring.
+ *
+ * <p>Run with {@code java -jar benchmarks/target/benchmarks.jar}, e.g. adding
+ * {@code -p rows=1000000 -p skew=ONE_GIANT_PROJECT} to pick the data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+  @Param({"100000"})
+  public long rows;
+
+  @Param({"1000"})
+  public int projects;
+
+  @Param({"10000"})
+  public int employees;
+
+  @Param({"UNIFORM", "ONE_GIANT_PROJECT", "MANY_TINY_PROJECTS", "ZIPF"})
+  public SyntheticDataGenerator.Skew skew;
+
+  private Path csvFile;
+  private PrintStream originalOut;
+  private final CsvReader csvReader = new CsvReader();
+  private final SolutionsService solutionsService = new SolutionsService();
+  private List<EmployeeWithProject> employeeWithProjectList;
+  private HashMap<Long, List<Employee>> projectsAndUsersMap;
+  private ColumnarDataset dataset;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    originalOut = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+    csvFile = Files.createTempFile("assignments-" + skew, ".csv");
+    new SyntheticDataGenerator().rows(rows)
+                                .projects(projects)
+                                .employees(employees)
+                                .skew(skew)
+                                .write(csvFile);
+
+    employeeWithProjectList = csvReader.readCsv(csvFile.toString());
+    projectsAndUsersMap = solutionsService.groupEmployeesByProject(employeeWithProjectList);
+    dataset = csvReader.readColumnar(csvFile.toString());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    System.setOut(originalOut);
+    Files.deleteIfExists(csvFile);
+  }
+
+  @Benchmark
+  public List<EmployeeWithProject> readCsv() throws IOException {
+    return csvReader.readCsv(csvFile.toString());
+  }
+
+  @Benchmark
+  public ColumnarDataset readColumnar() throws IOException {
+    return csvReader.readColumnar(csvFile.toString());
+  }
+
+  @Benchmark
+  public HashMap<Long, List<Employee>> filterUsersInProject() {
+    return solutionsService.filterUsersInProject(
+        employeeWithProjectList, solutionsService.getUniqueProjectIds(employeeWithProjectList));
+  }
+
+  @Benchmark
+  public HashMap<Long, List<Employee>> groupEmployeesByProject() {
+    return solutionsService.groupEmployeesByProject(employeeWithProjectList);
+  }
+
+  @Benchmark
+  public List<SolutionResult> getSolutionResultsBasedOnProjects() {
+    return solutionsService.getSolutionResultsBasedOnProjects(projectsAndUsersMap);
+  }
+
+  @Benchmark
+  public List<SolutionResult> getSolutionResultsBasedOnColumnar() {
+    return solutionsService.getSolutionResultsBasedOnProjects(dataset);
+  }
+
+  @Benchmark
+  public void mainPipeline() throws IOException {
+    Main.main(new String[] {"-f", csvFile.toString()});
+  }
+}
@@ -0,0 +1,192 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+
+/**
+ * Writes seeded, synthetic assignment data in the CsvReader format: a header line followed by
+ * "EmpId, ProjectId, DateFrom, DateTo" rows. The same settings and seed always produce the same
+ * file.
+ *
+ * <p>Settings:
+ * <ul>
+ *   <li>rows: Total number of rows.</li>
+ *   <li>projects: Number of distinct projects.</li>
+ *   <li>employees: Number of distinct employees.</li>
+ *   <li>assignmentsPerProject: If above 0, every project gets exactly this many rows and rows
+ *       is projects * assignmentsPerProject.</li>
+ *   <li>skew: How rows are spread over projects, see {@link Skew}.</li>
+ * </ul>
+ */
+public class SyntheticDataGenerator {
+  private static final LocalDate FIRST_START = LocalDate.of(2000, 1, 1);
+  private static final int START_RANGE_DAYS = 20 * 365;
+  private static final int MAX_STINT_DAYS = 1500;
+  // share of rows without an end date
+  private static final double NULL_END_RATE = 0.02;
+
+  /** How rows are spread over projects. */
+  public enum Skew {
+    // every project gets about the same number of rows
+    UNIFORM,
+    // project 1 gets half of all rows, the rest are spread uniformly
+    ONE_GIANT_PROJECT,
+    // projects of 2 to 4 rows, as many as the rows allow - the projects setting is ignored
+    MANY_TINY_PROJECTS,
+    // project sizes fall off with 1 / rank
+    ZIPF
+  }
+
+  private long seed = 42;
+  private long rows = 100_000;
+  private int projects = 1_000;
+  private int employees = 10_000;
+  private int assignmentsPerProject = 0;
+  private Skew skew = Skew.UNIFORM;
+
+  public SyntheticDataGenerator seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  public SyntheticDataGenerator rows(long rows) {
+    this.rows = rows;
+    return this;
+  }
+
+  public SyntheticDataGenerator projects(int projects) {
+    this.projects = projects;
+    return this;
+  }
+
+  public SyntheticDataGenerator employees(int employees) {
+    this.employees = employees;
+    return this;
+  }
+
+  public SyntheticDataGenerator assignmentsPerProject(int assignmentsPerProject) {
+    this.assignmentsPerProject = assignmentsPerProject;
+    return this;
+  }
+
+  public SyntheticDataGenerator skew(Skew skew) {
+    this.skew = skew;
+    return this;
+  }
+
+  /**
+   * Writes the CSV file.
+   *
+   * @param path The file to write.
+   * @throws IOException If an I/O error occurs while writing the file.
+   */
+  public void write(Path path) throws IOException {
+    Random random = new Random(seed);
+    double[] zipfCumulative = skew == Skew.ZIPF ? zipfCumulative(projects) : null;
+    long totalRows = assignmentsPerProject > 0 ? (long) projects * assignmentsPerProject : rows;
+
+    try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      writer.write("EmpId, ProjectId, DateFrom, DateTo\n");
+      StringBuilder line = new StringBuilder(64);
+      long tinyProject = 0;
+      int tinyRowsLeft = 0;
+      for (long row = 0; row < totalRows; row++) {
+        long projectId;
+        if (assignmentsPerProject > 0) {
+          projectId = 1 + row / assignmentsPerProject;
+        } else if (skew == Skew.MANY_TINY_PROJECTS) {
+          if (tinyRowsLeft == 0) {
+            tinyProject++;
+            tinyRowsLeft = 2 + random.nextInt(3);
+          }
+          tinyRowsLeft--;
+          projectId = tinyProject;
+        } else if (skew == Skew.ONE_GIANT_PROJECT && random.nextBoolean()) {
+          projectId = 1;
+        } else if (skew == Skew.ZIPF) {
+          projectId = 1 + lowerBound(zipfCumulative, random.nextDouble());
+        } else {
+          projectId = 1 + random.nextInt(projects);
+        }
+
+        LocalDate dateFrom = FIRST_START.plusDays(random.nextInt(START_RANGE_DAYS));
+        line.setLength(0);
+        line.append(1 + random.nextInt(employees)).append(", ")
+            .append(projectId).append(", ")
+            .append(dateFrom).append(", ");
+        if (random.nextDouble() < NULL_END_RATE) {
+          line.append("NULL");
+        } else {
+          line.append(dateFrom.plusDays(1 + random.nextInt(MAX_STINT_DAYS)));
+        }
+        line.append('\n');
+        writer.append(line);
+      }
+    }
+  }
+
+  private static double[] zipfCumulative(int projects) {
+    double[] cumulative = new double[projects];
+    double sum = 0;
+    for (int rank = 1; rank <= projects; rank++) {
+      sum += 1.0 / rank;
+      cumulative[rank - 1] = sum;
+    }
+    for (int i = 0; i < projects; i++) {
+      cumulative[i] /= sum;
+    }
+    return cumulative;
+  }
+
+  private static int lowerBound(double[] cumulative, double value) {
+    int low = 0;
+    int high = cumulative.length - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (cumulative[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Writes a CSV file from the command line:
+   * {@code <file> [rows] [projects] [employees] [skew] [seed] [assignmentsPerProject]}.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: SyntheticDataGenerator <file> [rows] [projects] [employees]"
+                             + " [UNIFORM|ONE_GIANT_PROJECT|MANY_TINY_PROJECTS|ZIPF] [seed]"
+                             + " [assignmentsPerProject]");
+      return;
+    }
+    SyntheticDataGenerator generator = new SyntheticDataGenerator();
+    if (args.length > 1) {
+      generator.rows(Long.parseLong(args[1]));
+    }
+    if (args.length > 2) {
+      generator.projects(Integer.parseInt(args[2]));
+    }
+    if (args.length > 3) {
+      generator.employees(Integer.parseInt(args[3]));
+    }
+    if (args.length > 4) {
+      generator.skew(Skew.valueOf(args[4]));
+    }
+    if (args.length > 5) {
+      generator.seed(Long.parseLong(args[5]));
+    }
+    if (args.length > 6) {
+      generator.assignmentsPerProject(Integer.parseInt(args[6]));
+    }
+    generator.write(Path.of(args[0]));
+  }
+}
@@ -0,0 +1,22 @@
+package models;
+
+import java.util.HashMap;
+
+import lombok.Data;
+
+/** The Checkpoint class represents the state an incremental run leaves for the next one:
+ *   asOfDay: Epoch day the "NULL" dates of the rows were resolved to.
+ *   consumedOffset: Offset just past the last line of the CSV file that has been read.
+ *   consumedLines: Number of lines that have been read.
+ *   dataset: All rows read so far, sorted by project.
+ *   results: The SolutionResult of every solved project by project ID, null for projects on
+ *            which no two employees overlap. Projects without an entry must be solved again.
+ */
+@Data
+public class Checkpoint {
+  private int asOfDay;
+  private long consumedOffset;
+  private long consumedLines;
+  private ColumnarDataset dataset;
+  private HashMap<Long, SolutionResult> results;
+}
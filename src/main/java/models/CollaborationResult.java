@@ -0,0 +1,20 @@
+package models;
+
+import java.util.List;
+
+import lombok.Data;
+
+/** The CollaborationResult class represents the pair of employees who have worked together for
+ * the longest total period of time, summed over all projects:
+ *   employeeOneId: Unique identifier of employee, the lower of the two IDs.
+ *   employeeTwoId: Unique identifier of employee, the higher of the two IDs.
+ *   totalDaysWorkedTogether: The number of days that the employees worked together in total.
+ *   projects: The days worked together on each shared project.
+ */
+@Data
+public class CollaborationResult {
+  private Long employeeOneId;
+  private Long employeeTwoId;
+  private long totalDaysWorkedTogether;
+  private List<SolutionResult> projects;
+}
@@ -0,0 +1,267 @@
+package models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import utils.LongIntHashMap;
+
+/** The ColumnarDataset class holds all parsed CSV rows in parallel primitive arrays, sorted by
+ * project, instead of one EmployeeWithProject object per row:
+ *   employeeId: The employee ID of each row.
+ *   projectId: The project ID of each row.
+ *   fromDay: The start date of each row as an epoch day.
+ *   toDay: The end date of each row as an epoch day.
+ * Rows of project p are the range [projectStart(p), projectEnd(p)), in file order. Projects are
+ * ordered by project ID. A row takes 24 bytes, against 100+ bytes for an EmployeeWithProject
+ * with its boxed ids and LocalDates, which are only created by the view methods for output.
+ */
+public class ColumnarDataset {
+  private final long[] employeeId;
+  private final long[] projectId;
+  private final int[] fromDay;
+  private final int[] toDay;
+  private final int size;
+  // distinct project IDs in ascending order, and where the rows of each project start
+  private final long[] projectIds;
+  private final int[] projectOffsets;
+
+  /**
+   * Creates a dataset from arrays that are already sorted by project.
+   *
+   * @param employeeId     The employee ID of each row.
+   * @param projectId      The project ID of each row.
+   * @param fromDay        The start epoch day of each row.
+   * @param toDay          The end epoch day of each row.
+   * @param projectIds     The distinct project IDs in ascending order.
+   * @param projectOffsets Row offset of each project, plus the row count as the last element.
+   */
+  public ColumnarDataset(long[] employeeId, long[] projectId, int[] fromDay, int[] toDay,
+                         long[] projectIds, int[] projectOffsets) {
+    this.employeeId = employeeId;
+    this.projectId = projectId;
+    this.fromDay = fromDay;
+    this.toDay = toDay;
+    this.size = projectOffsets[projectIds.length];
+    this.projectIds = projectIds;
+    this.projectOffsets = projectOffsets;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int projectCount() {
+    return projectIds.length;
+  }
+
+  public long projectIdAt(int project) {
+    return projectIds[project];
+  }
+
+  public int projectStart(int project) {
+    return projectOffsets[project];
+  }
+
+  public int projectEnd(int project) {
+    return projectOffsets[project + 1];
+  }
+
+  public int projectSize(int project) {
+    return projectOffsets[project + 1] - projectOffsets[project];
+  }
+
+  /**
+   * Finds the index of a project.
+   *
+   * @param id The project ID.
+   * @return The project index, or a negative value if the dataset has no rows for the project.
+   */
+  public int indexOfProject(long id) {
+    return Arrays.binarySearch(projectIds, id);
+  }
+
+  /** The employee ID column, shared and not to be modified. */
+  public long[] employeeIdColumn() {
+    return employeeId;
+  }
+
+  /** The project ID column, shared and not to be modified. */
+  public long[] projectIdColumn() {
+    return projectId;
+  }
+
+  /** The start epoch day column, shared and not to be modified. */
+  public int[] fromDayColumn() {
+    return fromDay;
+  }
+
+  /** The end epoch day column, shared and not to be modified. */
+  public int[] toDayColumn() {
+    return toDay;
+  }
+
+  /** The project offset table, shared and not to be modified. */
+  public int[] projectOffsets() {
+    return projectOffsets;
+  }
+
+  /**
+   * Creates an EmployeeWithProject view of a row, for output.
+   *
+   * @param row The row index.
+   * @return A new EmployeeWithProject with the values of the row.
+   */
+  public EmployeeWithProject getRow(int row) {
+    EmployeeWithProject employeeWithProject = new EmployeeWithProject();
+    employeeWithProject.setEmployeeId(employeeId[row]);
+    employeeWithProject.setProjectId(projectId[row]);
+    employeeWithProject.setDateFrom(LocalDate.ofEpochDay(fromDay[row]));
+    employeeWithProject.setDateTo(LocalDate.ofEpochDay(toDay[row]));
+    return employeeWithProject;
+  }
+
+  /**
+   * Creates Employee views of the rows of a project, for output.
+   *
+   * @param project The project index.
+   * @return A new list with an Employee per row of the project, in file order.
+   */
+  public List<Employee> getEmployees(int project) {
+    List<Employee> employees = new ArrayList<>(projectSize(project));
+    for (int row = projectStart(project); row < projectEnd(project); row++) {
+      employees.add(getRow(row));
+    }
+    return employees;
+  }
+
+  /** Collects rows in file order and sorts them by project when built. */
+  public static class Builder {
+    private long[] employeeId;
+    private long[] projectId;
+    private int[] fromDay;
+    private int[] toDay;
+    private int size;
+
+    public Builder() {
+      this(1024);
+    }
+
+    public Builder(int expectedRows) {
+      int capacity = Math.max(expectedRows, 16);
+      employeeId = new long[capacity];
+      projectId = new long[capacity];
+      fromDay = new int[capacity];
+      toDay = new int[capacity];
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Appends a row.
+     *
+     * @param employee The employee ID.
+     * @param project  The project ID.
+     * @param from     The start epoch day.
+     * @param to       The end epoch day.
+     */
+    public void add(long employee, long project, int from, int to) {
+      if (size == employeeId.length) {
+        grow(size + 1);
+      }
+      employeeId[size] = employee;
+      projectId[size] = project;
+      fromDay[size] = from;
+      toDay[size] = to;
+      size++;
+    }
+
+    /**
+     * Appends all rows of another builder, keeping their order.
+     *
+     * @param other The builder whose rows are appended.
+     */
+    public void addAll(Builder other) {
+      if (size + other.size > employeeId.length) {
+        grow(size + other.size);
+      }
+      System.arraycopy(other.employeeId, 0, employeeId, size, other.size);
+      System.arraycopy(other.projectId, 0, projectId, size, other.size);
+      System.arraycopy(other.fromDay, 0, fromDay, size, other.size);
+      System.arraycopy(other.toDay, 0, toDay, size, other.size);
+      size += other.size;
+    }
+
+    /**
+     * Appends all rows of a dataset, in the dataset's order.
+     *
+     * @param dataset The dataset whose rows are appended.
+     */
+    public void addAll(ColumnarDataset dataset) {
+      if (size + dataset.size > employeeId.length) {
+        grow(size + dataset.size);
+      }
+      System.arraycopy(dataset.employeeId, 0, employeeId, size, dataset.size);
+      System.arraycopy(dataset.projectId, 0, projectId, size, dataset.size);
+      System.arraycopy(dataset.fromDay, 0, fromDay, size, dataset.size);
+      System.arraycopy(dataset.toDay, 0, toDay, size, dataset.size);
+      size += dataset.size;
+    }
+
+    /**
+     * Sorts the rows by project ID, keeping file order within a project, and builds the dataset.
+     * Runs in O(rows + projects log projects).
+     *
+     * @return The dataset.
+     */
+    public ColumnarDataset build() {
+      // count the rows of each project, keyed by primitive project IDs
+      LongIntHashMap projectIndexes = new LongIntHashMap();
+      int[] rowCounts = new int[16];
+      for (int row = 0; row < size; row++) {
+        int projectIndex = projectIndexes.putIfAbsent(projectId[row], projectIndexes.size());
+        if (projectIndex == rowCounts.length) {
+          rowCounts = Arrays.copyOf(rowCounts, rowCounts.length * 2);
+        }
+        rowCounts[projectIndex]++;
+      }
+
+      // order the projects by ID and compute where the rows of each project start
+      long[] projectIds = projectIndexes.keys();
+      Arrays.sort(projectIds);
+      int[] projectOffsets = new int[projectIds.length + 1];
+      int[] nextRow = new int[projectIds.length];
+      for (int project = 0; project < projectIds.length; project++) {
+        int projectIndex = projectIndexes.get(projectIds[project], -1);
+        projectOffsets[project + 1] = projectOffsets[project] + rowCounts[projectIndex];
+        nextRow[projectIndex] = projectOffsets[project];
+      }
+
+      // scatter the rows to their project ranges
+      long[] sortedEmployeeId = new long[size];
+      long[] sortedProjectId = new long[size];
+      int[] sortedFromDay = new int[size];
+      int[] sortedToDay = new int[size];
+      for (int row = 0; row < size; row++) {
+        int target = nextRow[projectIndexes.get(projectId[row], -1)]++;
+        sortedEmployeeId[target] = employeeId[row];
+        sortedProjectId[target] = projectId[row];
+        sortedFromDay[target] = fromDay[row];
+        sortedToDay[target] = toDay[row];
+      }
+      return new ColumnarDataset(sortedEmployeeId, sortedProjectId, sortedFromDay, sortedToDay,
+                                 projectIds, projectOffsets);
+    }
+
+    private void grow(int minCapacity) {
+      int capacity = Math.max(minCapacity, employeeId.length + (employeeId.length >> 1));
+      employeeId = Arrays.copyOf(employeeId, capacity);
+      projectId = Arrays.copyOf(projectId, capacity);
+      fromDay = Arrays.copyOf(fromDay, capacity);
+      toDay = Arrays.copyOf(toDay, capacity);
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package models;
+
+import lombok.Data;
+
+/** The EngineStats class represents the projects one overlap engine solved within a size range:
+ *   engine: Name of the engine, e.g. "brute-force" or "sweep-line".
+ *   minProjectSize: Smallest project size of the range, in rows.
+ *   maxProjectSize: Largest project size of the range, in rows.
+ *   projects: Number of projects the engine solved.
+ *   rows: Number of rows of those projects.
+ *   solveNanos: Time the engine took for them in total.
+ */
+@Data
+public class EngineStats {
+  private String engine;
+  private int minProjectSize;
+  private int maxProjectSize;
+  private long projects;
+  private long rows;
+  private long solveNanos;
+
+  public double getSolveMillis() {
+    return solveNanos / 1e6;
+  }
+
+  public double getMicrosPerProject() {
+    return projects > 0 ? solveNanos / 1e3 / projects : 0;
+  }
+}
@@ -0,0 +1,31 @@
+package models;
+
+import lombok.Data;
+
+/** The StageStats class represents the measurements of one stage of a pipeline run:
+ *   name: Name of the stage, e.g. "read" or "solve".
+ *   wallTimeNanos: Wall time the stage took.
+ *   rows: Number of rows the stage handled, 0 if unknown.
+ *   bytes: Number of input bytes the stage handled, 0 if it read no input.
+ *   allocatedBytes: Heap bytes the JVM's threads allocated during the stage.
+ */
+@Data
+public class StageStats {
+  private String name;
+  private long wallTimeNanos;
+  private long rows;
+  private long bytes;
+  private long allocatedBytes;
+
+  public double getWallTimeMillis() {
+    return wallTimeNanos / 1e6;
+  }
+
+  public double getRowsPerSecond() {
+    return wallTimeNanos > 0 ? rows * 1e9 / wallTimeNanos : 0;
+  }
+
+  public double getBytesPerSecond() {
+    return wallTimeNanos > 0 ? bytes * 1e9 / wallTimeNanos : 0;
+  }
+}
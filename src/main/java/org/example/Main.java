@@ -1,20 +1,46 @@
 package org.example;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
-import models.Employee;
-import models.EmployeeWithProject;
+import models.CollaborationResult;
+import models.ColumnarDataset;
 import models.SolutionResult;
+import services.AsyncRejectFileSink;
+import services.ConsoleRejectSink;
 import services.CsvReader;
+import services.DateParser;
+import services.ExternalSortSolutionsService;
+import services.IncrementalSolutionsService;
+import services.MappedCsvParser;
+import services.OverlapAlgorithm;
+import services.PairAggregationService;
+import services.PipelineStats;
+import services.RejectSink;
+import services.ResultFormat;
+import services.ResultWriter;
+import services.ShardedSolutionsService;
+import services.StintNormalizer;
+import services.StreamingSolutionsService;
+import services.TextResultWriter;
+import services.TopPairsService;
 import services.SolutionsService;
 
 public class Main {
@@ -23,40 +49,383 @@ public class Main {
 
     // init command line options
     Options options = new Options();
-    options.addOption("f", "file", true, "path and csv file");
+    options.addOption(Option.builder("f").longOpt("file").hasArgs()
+                            .desc("csv files, directories of csv files or globs, read in "
+                                      + "parallel with -t and merged; more can follow the "
+                                      + "options, and .gz files are decompressed while read")
+                            .build());
+    options.addOption("a", "algorithm", true,
+                      "overlap algorithm: adaptive (default), sweep-line, pair-scan or "
+                          + "brute-force");
+    options.addOption(null, "brute-force-below", true,
+                      "project size below which the adaptive algorithm uses brute force "
+                          + "instead of the sweep line (default "
+                          + SolutionsService.DEFAULT_BRUTE_FORCE_CUTOFF + ")");
+    options.addOption("g", "aggregate", false,
+                      "report the pair with the most days together across all projects");
+    options.addOption("k", "top", true,
+                      "report the top K pairs of each project and of the whole dataset, as text");
+    options.addOption("i", "incremental", false,
+                      "re-solve only the projects touched by lines appended since the last run");
+    options.addOption("s", "snapshot", false,
+                      "load the parsed file from its binary snapshot, writing one if it is stale");
+    options.addOption("M", "max-memory", true,
+                      "solve files larger than the heap by spilling sorted runs to disk, keeping "
+                          + "the rows within this many bytes, e.g. 512m");
+    options.addOption("S", "stream", false,
+                      "read the file as a stream, keeping only per-project intervals; "
+                          + "-f - reads standard input");
+    options.addOption("G", "grouped", false,
+                      "with --stream, the rows are grouped by project: print each project as "
+                          + "soon as its rows end");
+    options.addOption("r", "rejects", true,
+                      "write the ignored lines to this file instead of printing the first ones");
+    options.addOption("t", "threads", true, "number of threads reading the file and solving projects in parallel");
+    options.addOption(null, "stats", false,
+                      "print the wall time, throughput and allocation of each stage after the "
+                          + "results");
+    options.addOption(null, "stats-json", true, "write the stage statistics as JSON to this file");
+    options.addOption(null, "serve", true,
+                      "load the file once and answer queries over HTTP on this local port");
+    options.addOption(null, "normalize", false,
+                      "merge the overlapping or adjacent stints of each employee on a project "
+                          + "before solving");
+    options.addOption(null, "as-of", true,
+                      "the date NULL end dates stand for, instead of the day the run starts");
+    options.addOption("o", "output", true,
+                      "write the results to this file instead of the console");
+    options.addOption(null, "format", true,
+                      "format of the results: text (default), csv, json-lines or binary");
+    options.addOption(null, "shards", true,
+                      "partition the rows by project into this many shards and solve each on "
+                          + "its own worker JVM");
 
     // init comman line parser
     CommandLineParser parser = new DefaultParser();
     try {
       // parse command line arguments
       CommandLine line = parser.parse(options, args);
-      String pathAndFile = line.getOptionValue("f", "C:\\");
+      // the inputs are the -f values and any arguments after the options
+      List<String> inputs = new ArrayList<>();
+      if (line.hasOption("f")) {
+        inputs.addAll(Arrays.asList(line.getOptionValues("f")));
+      }
+      inputs.addAll(line.getArgList());
+      if (inputs.isEmpty()) {
+        throw new IllegalArgumentException("No input file given, use -f <file>");
+      }
 
-      // init csvReader and services
-      CsvReader csvReader = new CsvReader();
-      SolutionsService solutionsService = new SolutionsService();
+      // stages are always measured, but only reported, and exposed over JMX, on request
+      PipelineStats pipelineStats = new PipelineStats();
+      boolean reportStats = line.hasOption("stats") || line.hasOption("stats-json");
+      if (reportStats) {
+        pipelineStats.registerMBean();
+      }
 
-      // read csv data
-      List<EmployeeWithProject> employeeWithProjectList = csvReader.readCsv(pathAndFile);
+      // diagnostics stay out of the results when those go to the standard output
+      PrintStream diagnostics = line.hasOption("o") ? System.out : System.err;
 
-      // create List of unique projectIds
-      Set<Long> projectIds = solutionsService.getUniqueProjectIds(employeeWithProjectList);
+      // ignored lines are counted, and written to a reject file in the background if one is
+      // given; closing the sink prints the summary
+      try (RejectSink rejectSink = line.hasOption("r")
+          ? new AsyncRejectFileSink(Path.of(line.getOptionValue("r")), diagnostics)
+          : new ConsoleRejectSink(diagnostics, ConsoleRejectSink.DEFAULT_PRINT_LIMIT)) {
+        solve(line, inputs, rejectSink, diagnostics, pipelineStats, reportStats);
+      } catch (UncheckedIOException e) {
+        // thrown by a ResultWriter handed to a service as a Consumer
+        throw e.getCause();
+      }
+      if (line.hasOption("stats")) {
+        pipelineStats.printReport(diagnostics);
+      }
+      if (line.hasOption("stats-json")) {
+        Files.writeString(Path.of(line.getOptionValue("stats-json")), pipelineStats.toJson());
+      }
+    } catch (ParseException | IllegalArgumentException exp) {
+      System.err.println("Parsing failed.  Reason: " + exp.getMessage());
+    }
+  }
 
-      // create HashMap of each project with a list of employees who worked on that project
+  private static void solve(CommandLine line, List<String> inputs, RejectSink rejectSink,
+                            PrintStream diagnostics, PipelineStats pipelineStats,
+                            boolean reportStats) throws IOException {
+    // "NULL" end dates resolve to one day for the whole run: the --as-of date, or today
+    LocalDate asOf = asOf(line);
 
-      HashMap<Long, List<Employee>> projectsAndUsersMap = solutionsService.filterUsersInProject(
-          employeeWithProjectList, projectIds);
+    // init csvReader and services
+    CsvReader csvReader = new CsvReader();
+    csvReader.setRejectSink(rejectSink);
+    csvReader.setDiagnostics(diagnostics);
+    csvReader.setAsOf(asOf);
+    SolutionsService solutionsService = new SolutionsService();
+    solutionsService.setRejectSink(rejectSink);
+    solutionsService.setAsOf(asOf);
+    if (reportStats) {
+      solutionsService.setPipelineStats(pipelineStats);
+    }
+    if (line.hasOption("a")) {
+      solutionsService.setOverlapAlgorithm(
+          OverlapAlgorithm.fromOptionValue(line.getOptionValue("a")));
+    }
+    if (line.hasOption("brute-force-below")) {
+      solutionsService.setBruteForceCutoff(
+          Integer.parseInt(line.getOptionValue("brute-force-below")));
+    }
+
+    // an incremental run only solves the projects, it keeps no dataset to aggregate or rank
+    boolean incremental = line.hasOption("i");
+    if (incremental && (line.hasOption("g") || line.hasOption("k"))) {
+      throw new IllegalArgumentException(
+          "--incremental can't be combined with --aggregate or --top");
+    }
+
+    // the report of --aggregate is not a list of results, so it is only printed as text
+    if (line.hasOption("g") && (line.hasOption("o") || resultFormat(line) != ResultFormat.TEXT)) {
+      throw new IllegalArgumentException(
+          "--aggregate prints its report to the console, not with --output or --format");
+    }
+
+    // the two lists of --top are only told apart by the heading of the text format
+    if (line.hasOption("k") && resultFormat(line) != ResultFormat.TEXT) {
+      throw new IllegalArgumentException("--top writes two lists, so it needs --format text");
+    }
+
+    // stints are normalized on the dataset of an in-memory run
+    if (line.hasOption("normalize") && (line.hasOption("serve") || line.hasOption("S")
+        || inputs.contains("-") || line.hasOption("M") || line.hasOption("shards")
+        || incremental)) {
+      throw new IllegalArgumentException(
+          "--normalize works with in-memory runs only, not with --serve, --stream, "
+              + "--max-memory, --shards or --incremental");
+    }
+
+    // the server mode loads the file once and answers queries until the JVM is stopped; without
+    // --as-of every reload resolves the day it runs on
+    if (line.hasOption("serve")) {
+      QueryServer.serve(singleFile(inputs, "--serve"),
+                        Integer.parseInt(line.getOptionValue("serve")), rejectSink,
+                        line.hasOption("as-of") ? asOf : null);
+      return;
+    }
+
+    // a stream is solved project by project without keeping a list of its rows
+    if (line.hasOption("S") || inputs.contains("-")) {
+      String pathAndFile = singleFile(inputs, "--stream");
+      PipelineStats.Stage stage = pipelineStats.start("stream");
+      try (ResultWriter resultWriter = openResultWriter(line)) {
+        streamSolutions(pathAndFile, solutionsService, rejectSink, asOf, line.hasOption("G"),
+                        resultWriter);
+      }
+      stage.stop(0, "-".equals(pathAndFile) ? 0 : Files.size(Path.of(pathAndFile)));
+      return;
+    }
+
+    // a memory budget sorts the rows on disk instead of holding them all
+    if (line.hasOption("M")) {
+      String pathAndFile = singleFile(inputs, "--max-memory");
+      ExternalSortSolutionsService externalSortSolutionsService =
+          new ExternalSortSolutionsService(solutionsService);
+      externalSortSolutionsService.setRejectSink(rejectSink);
+      externalSortSolutionsService.setAsOf(asOf);
+      PipelineStats.Stage stage = pipelineStats.start("externalSort");
+      try (ResultWriter resultWriter = openResultWriter(line)) {
+        externalSortSolutionsService.solve(
+            Path.of(pathAndFile),
+            ExternalSortSolutionsService.parseMemorySize(line.getOptionValue("M")),
+            resultWriter);
+      }
+      stage.stop(0, Files.size(Path.of(pathAndFile)));
+      return;
+    }
+
+    // shards are solved on worker JVMs and their results merged by project
+    if (line.hasOption("shards")) {
+      List<Path> sources = csvReader.resolveInputs(inputs);
+      ShardedSolutionsService shardedSolutionsService =
+          new ShardedSolutionsService(solutionsService);
+      shardedSolutionsService.setRejectSink(rejectSink);
+      shardedSolutionsService.setAsOf(asOf);
+      PipelineStats.Stage stage = pipelineStats.start("shards");
+      try (ResultWriter resultWriter = openResultWriter(line)) {
+        shardedSolutionsService.solve(sources, Integer.parseInt(line.getOptionValue("shards")),
+                                      resultWriter);
+      }
+      long bytes = 0;
+      for (Path source : sources) {
+        bytes += Files.size(source);
+      }
+      stage.stop(0, bytes);
+      return;
+    }
+
+    // threads > 1 reads the file and solves the projects on a ForkJoinPool
+    int threads = Integer.parseInt(line.getOptionValue("t", "1"));
+    ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    try (ResultWriter resultWriter = line.hasOption("g") ? null : openResultWriter(line)) {
+      // read csv data into primitive columns grouped by project
+      ColumnarDataset dataset = null;
+      if (!incremental) {
+        PipelineStats.Stage stage = pipelineStats.start(line.hasOption("s") ? "snapshot" : "read");
+        long bytes = 0;
+        if (line.hasOption("s")) {
+          String pathAndFile = singleFile(inputs, "--snapshot");
+          dataset = csvReader.readColumnarWithSnapshot(pathAndFile, pool);
+          bytes = Files.size(Path.of(pathAndFile));
+        } else {
+          // all files are merged into one dataset, so projects spread over files are whole
+          List<Path> sources = csvReader.resolveInputs(inputs);
+          dataset = csvReader.readColumnar(sources, pool);
+          for (Path source : sources) {
+            bytes += Files.size(source);
+          }
+        }
+        stage.stop(dataset.size(), bytes);
+      }
+      if (line.hasOption("normalize")) {
+        PipelineStats.Stage stage = pipelineStats.start("normalize");
+        dataset = new StintNormalizer().normalize(dataset);
+        stage.stop(dataset.size(), 0);
+      }
+
+      if (line.hasOption("g")) {
+        // report the pair with the most days together summed over all projects
+        PipelineStats.Stage stage = pipelineStats.start("aggregate");
+        CollaborationResult collaboration =
+            new PairAggregationService().findLongestCollaboratingPair(dataset);
+        stage.stop(dataset.size(), 0);
+        printCollaboration(collaboration);
+        return;
+      }
+
+      if (line.hasOption("k")) {
+        // report the top K pairs of every project, then of the whole dataset
+        int k = Integer.parseInt(line.getOptionValue("k"));
+        TopPairsService topPairsService = new TopPairsService();
+        PipelineStats.Stage stage = pipelineStats.start("topPairs");
+        List<SolutionResult> topPairsPerProject = topPairsService.getTopPairsPerProject(dataset, k);
+        List<SolutionResult> topPairs = topPairsService.getTopPairs(topPairsPerProject, k);
+        stage.stop(dataset.size(), 0);
+        writeSolutionResults(resultWriter, topPairsPerProject);
+        ((TextResultWriter) resultWriter).writeLine("Top " + k + " pairs overall:");
+        writeSolutionResults(resultWriter, topPairs);
+        return;
+      }
 
       // create SolutionResult List of each project and the pair of employees with longest overlap
-      List<SolutionResult> solutionResultList = solutionsService.getSolutionResultsBasedOnProjects(
-          projectsAndUsersMap);
-      // print solution for each project
-      for(SolutionResult result: solutionResultList){
-        System.out.printf("Project ID: %s, Total Days: %s, Emp1: %s, Emp2: %s%n", result.getProjectId(), result.getDaysWorkedTogether(), result.getEmployeeOneId(), result.getEmployeeTwoId());
+      List<SolutionResult> solutionResultList = null;
+      if (incremental) {
+        String pathAndFile = singleFile(inputs, "--incremental");
+        IncrementalSolutionsService incrementalSolutionsService =
+            new IncrementalSolutionsService(solutionsService);
+        incrementalSolutionsService.setRejectSink(rejectSink);
+        incrementalSolutionsService.setAsOf(asOf);
+        PipelineStats.Stage stage = pipelineStats.start("incremental");
+        solutionResultList = incrementalSolutionsService.getSolutionResults(
+            Path.of(pathAndFile), pool);
+        stage.stop(0, Files.size(Path.of(pathAndFile)));
+      } else if (pool != null) {
+        PipelineStats.Stage stage = pipelineStats.start("solve");
+        solutionResultList = solutionsService.getSolutionResultsBasedOnProjects(dataset, pool);
+        stage.stop(dataset.size(), 0);
+      } else {
+        // a sequential run writes each result as soon as its project is solved
+        PipelineStats.Stage stage = pipelineStats.start("solve");
+        solutionsService.solve(dataset, resultWriter);
+        stage.stop(dataset.size(), 0);
       }
 
-    } catch (ParseException exp) {
-      System.err.println("Parsing failed.  Reason: " + exp.getMessage());
+      // write the solution of each project collected by the parallel or incremental run
+      if (solutionResultList != null) {
+        PipelineStats.Stage stage = pipelineStats.start("print");
+        writeSolutionResults(resultWriter, solutionResultList);
+        resultWriter.flush();
+        stage.stop(solutionResultList.size(), 0);
+      }
+    } finally {
+      if (pool != null) {
+        pool.shutdown();
+      }
+    }
+  }
+
+  private static void streamSolutions(String pathAndFile, SolutionsService solutionsService,
+                                      RejectSink rejectSink, LocalDate asOf, boolean grouped,
+                                      ResultWriter resultWriter) throws IOException {
+    StreamingSolutionsService streamingSolutionsService =
+        new StreamingSolutionsService(solutionsService);
+    streamingSolutionsService.setRejectSink(rejectSink);
+    streamingSolutionsService.setAsOf(asOf);
+    if ("-".equals(pathAndFile)) {
+      streamingSolutionsService.solveStream(System.in, grouped, resultWriter);
+      return;
+    }
+    // a gzip file is decompressed as it is read
+    try (InputStream inputStream = MappedCsvParser.isGzip(Path.of(pathAndFile))
+        ? new GZIPInputStream(Files.newInputStream(Path.of(pathAndFile)), 64 * 1024)
+        : Files.newInputStream(Path.of(pathAndFile))) {
+      streamingSolutionsService.solveStream(inputStream, grouped, resultWriter);
+    }
+  }
+
+  /**
+   * Returns the only input of a mode that reads a single file.
+   *
+   * @throws IllegalArgumentException If there is more than one input, or it is a directory.
+   */
+  private static String singleFile(List<String> inputs, String mode) {
+    if (inputs.size() != 1 || Files.isDirectory(Path.of(inputs.get(0)))) {
+      throw new IllegalArgumentException(mode + " reads a single file, got " + inputs);
+    }
+    return inputs.get(0);
+  }
+
+  /**
+   * Opens the writer of the results, for the --output file or else the console, in the
+   * --format format.
+   */
+  private static ResultWriter openResultWriter(CommandLine line) throws IOException {
+    ResultFormat format = resultFormat(line);
+    if (line.hasOption("o")) {
+      return ResultWriter.create(format, Files.newOutputStream(Path.of(line.getOptionValue("o"))));
+    }
+    return ResultWriter.toStandardOutput(format);
+  }
+
+  private static LocalDate asOf(CommandLine line) {
+    if (!line.hasOption("as-of")) {
+      return LocalDate.now();
+    }
+    int asOfDay = new DateParser().parseEpochDay(line.getOptionValue("as-of"));
+    if (asOfDay == DateParser.INVALID) {
+      throw new IllegalArgumentException("Invalid --as-of date: " + line.getOptionValue("as-of"));
+    }
+    return LocalDate.ofEpochDay(asOfDay);
+  }
+
+  private static ResultFormat resultFormat(CommandLine line) {
+    return line.hasOption("format")
+        ? ResultFormat.fromOptionValue(line.getOptionValue("format")) : ResultFormat.TEXT;
+  }
+
+  private static void writeSolutionResults(ResultWriter resultWriter,
+                                           List<SolutionResult> solutionResultList)
+      throws IOException {
+    for (SolutionResult result : solutionResultList) {
+      resultWriter.write(result);
+    }
+  }
+
+  private static void printCollaboration(CollaborationResult collaboration) {
+    if (collaboration == null) {
+      System.out.println("No two employees worked together");
+      return;
+    }
+    System.out.printf("Emp1: %s, Emp2: %s, Total Days: %s%n", collaboration.getEmployeeOneId(),
+                      collaboration.getEmployeeTwoId(),
+                      collaboration.getTotalDaysWorkedTogether());
+    for (SolutionResult result : collaboration.getProjects()) {
+      System.out.printf("Project ID: %s, Days: %s%n", result.getProjectId(),
+                        result.getDaysWorkedTogether());
     }
   }
 }
\ No newline at end of file
@@ -4,28 +4,31 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import javax.swing.*;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.table.DefaultTableModel;
 
-import models.Employee;
-import models.EmployeeWithProject;
+import models.ColumnarDataset;
 import models.SolutionResult;
 import services.CsvReader;
 import services.SolutionsService;
 
 class MainGUI extends JFrame {
   private JButton processButton;
+  private JButton cancelButton;
+  private JProgressBar progressBar;
   private JTextArea outputTextArea;
   private JButton openFileButton;
   private JFileChooser fileChooser;
   private JTable table;
   private String pathAndFile = "";
+  // reads and solves the file off the Event Dispatch Thread, null once its background thread
+  // has returned and its results are shown
+  private SolutionsWorker solutionsWorker;
 
   public MainGUI() {
     setTitle("Tool #1");
@@ -39,6 +42,11 @@ class MainGUI extends JFrame {
 
   private void initComponents() {
     processButton = new JButton("Process Solutions");
+    cancelButton = new JButton("Cancel");
+    cancelButton.setEnabled(false);
+    progressBar = new JProgressBar(0, 100);
+    progressBar.setStringPainted(true);
+    progressBar.setString("");
     outputTextArea = new JTextArea();
     outputTextArea.setEditable(false);
     openFileButton = new JButton("Open File");
@@ -49,7 +57,12 @@ class MainGUI extends JFrame {
     JPanel panel = new JPanel();
     panel.setLayout(new BorderLayout());
     panel.add(openFileButton, BorderLayout.NORTH);
-    panel.add(processButton, BorderLayout.SOUTH);
+    JPanel processPanel = new JPanel();
+    processPanel.setLayout(new BorderLayout());
+    processPanel.add(processButton, BorderLayout.CENTER);
+    processPanel.add(cancelButton, BorderLayout.EAST);
+    processPanel.add(progressBar, BorderLayout.SOUTH);
+    panel.add(processPanel, BorderLayout.SOUTH);
     panel.add(new JScrollPane(table), BorderLayout.CENTER);
     add(panel);
   }
@@ -58,11 +71,14 @@ class MainGUI extends JFrame {
     processButton.addActionListener(new ActionListener() {
       @Override
       public void actionPerformed(ActionEvent e) {
-        try {
-          processSolutions(pathAndFile);
-        } catch (IOException ex) {
-          ex.printStackTrace();
-          outputTextArea.setText("Error processing solutions: " + ex.getMessage());
+        processSolutions(pathAndFile);
+      }
+    });
+    cancelButton.addActionListener(new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        if (solutionsWorker != null) {
+          solutionsWorker.cancel(true);
         }
       }
     });
@@ -79,44 +95,67 @@ class MainGUI extends JFrame {
     });
   }
 
-  private void processSolutions(String filePath) throws IOException {
+  private void processSolutions(String filePath) {
     if (filePath.equals("")) {
       System.out.println("No File Loaded");
       return;
     }
-    // Same Logic followed as Main class
-    CsvReader csvReader = new CsvReader();
-    SolutionsService solutionsService = new SolutionsService();
-
-    List<EmployeeWithProject> employeeWithProjectList = csvReader.readCsv(filePath);
-    Set<Long> projectIds = solutionsService.getUniqueProjectIds(employeeWithProjectList);
-    HashMap<Long, List<Employee>> projectsAndUsersMap = solutionsService.filterUsersInProject(
-        employeeWithProjectList, projectIds);
-
-    List<SolutionResult> solutionResultList = solutionsService.getSolutionResultsBasedOnProjects(
-        projectsAndUsersMap);
+    processButton.setEnabled(false);
+    cancelButton.setEnabled(true);
+    progressBar.setIndeterminate(true);
+    progressBar.setString("Reading " + filePath);
+
+    SolutionsWorker worker = new SolutionsWorker(filePath);
+    worker.addPropertyChangeListener(event -> {
+      // progress events can still arrive after a cancel
+      if ("progress".equals(event.getPropertyName()) && !worker.isDone()) {
+        progressBar.setIndeterminate(false);
+        progressBar.setValue((Integer) event.getNewValue());
+        progressBar.setString("Solving projects " + event.getNewValue() + "%");
+      }
+    });
+    solutionsWorker = worker;
+    worker.execute();
+  }
 
-    populateTable(solutionResultList);
+  private void showSolutions(SolutionsWorker worker) {
+    cancelButton.setEnabled(false);
+    progressBar.setIndeterminate(false);
+    try {
+      List<SolutionResult> solutionResultList = worker.get();
+      // the table reads its cells from the result list instead of copying them
+      table.setModel(new SolutionResultTableModel(solutionResultList));
+      progressBar.setValue(100);
+      progressBar.setString(solutionResultList.size() + " results");
+    } catch (CancellationException e) {
+      // a cancelled worker is done at once, but its read only stops when it returns
+      progressBar.setValue(0);
+      progressBar.setString("Cancelling");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      e.getCause().printStackTrace();
+      progressBar.setValue(0);
+      progressBar.setString("Failed");
+      outputTextArea.setText("Error processing solutions: " + e.getCause().getMessage());
+      JOptionPane.showMessageDialog(this, outputTextArea.getText(), getTitle(),
+                                    JOptionPane.ERROR_MESSAGE);
+    }
   }
 
-  private void populateTable(List<SolutionResult> solutionResultList) {
-    Vector<Vector<String>> data = new Vector<>();
-    Vector<String> columnNames = new Vector<>();
-    columnNames.add("Employee ID #1");
-    columnNames.add("Employee ID #2");
-    columnNames.add("Project ID");
-    columnNames.add("Days worked");
-
-    for (SolutionResult result : solutionResultList) {
-      Vector<String> currRow = new Vector<>();
-      currRow.add(String.valueOf(result.getEmployeeOneId()));
-      currRow.add(String.valueOf(result.getEmployeeTwoId()));
-      currRow.add(String.valueOf(result.getProjectId()));
-      currRow.add(String.valueOf(result.getDaysWorkedTogether()));
-      data.add(currRow);
+  /**
+   * Lets a new file be processed once a worker's background thread has returned and its results
+   * are shown, so a cancelled read never runs alongside a new one.
+   */
+  private void releaseWorker(SolutionsWorker worker) {
+    if (!worker.returned || !worker.shown) {
+      return;
+    }
+    solutionsWorker = null;
+    processButton.setEnabled(true);
+    if (worker.isCancelled()) {
+      progressBar.setString("Cancelled");
     }
-    DefaultTableModel model = new DefaultTableModel(data, columnNames);
-    table.setModel(model);
   }
 
   private void loadFile() throws IOException {
@@ -133,6 +172,54 @@ class MainGUI extends JFrame {
     }
   }
 
+  /**
+   * Reads and solves a file in the background, following the same logic as the Main class.
+   * Progress is the share of projects solved, and a cancel stops it before the next project.
+   */
+  private class SolutionsWorker extends SwingWorker<List<SolutionResult>, Void> {
+    private final String filePath;
+    // set on the Event Dispatch Thread once doInBackground has returned, and once done has run
+    private boolean returned;
+    private boolean shown;
+
+    SolutionsWorker(String filePath) {
+      this.filePath = filePath;
+    }
+
+    @Override
+    protected List<SolutionResult> doInBackground() throws IOException {
+      try {
+        CsvReader csvReader = new CsvReader();
+        SolutionsService solutionsService = new SolutionsService();
+
+        // reruns of an unchanged file load its binary snapshot instead of parsing it again
+        ColumnarDataset dataset = csvReader.readColumnarWithSnapshot(filePath, null);
+        List<SolutionResult> solutionResultList = new ArrayList<>();
+        int projectCount = dataset.projectCount();
+        for (int project = 0; project < projectCount && !isCancelled(); project++) {
+          SolutionResult solutionResult = solutionsService.solveProject(dataset, project);
+          if (solutionResult != null) {
+            solutionResultList.add(solutionResult);
+          }
+          setProgress((int) ((project + 1L) * 100 / projectCount));
+        }
+        return solutionResultList;
+      } finally {
+        SwingUtilities.invokeLater(() -> {
+          returned = true;
+          releaseWorker(this);
+        });
+      }
+    }
+
+    @Override
+    protected void done() {
+      showSolutions(this);
+      shown = true;
+      releaseWorker(this);
+    }
+  }
+
   public static void main(String[] args) {
     SwingUtilities.invokeLater(new Runnable() {
       @Override
@@ -0,0 +1,340 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import models.CollaborationResult;
+import models.ColumnarDataset;
+import models.SolutionResult;
+import services.BruteForceOverlapEngine;
+import services.CsvReader;
+import services.DateParser;
+import services.PairScanOverlapEngine;
+import services.QueryService;
+import services.RejectSink;
+import services.SolutionsService;
+import services.SweepLineOverlapFinder;
+import services.TopPairsService;
+
+/**
+ * Serves queries against a dataset loaded once into a Spring-managed QueryService, over a local
+ * HTTP endpoint. Answers are JSON:
+ * <pre>
+ *   GET  /projects/{projectId}/best-pair         the pair with the longest overlap on a project
+ *   GET  /pairs/top?k=10                         the top K pairs of the whole dataset, K up to
+ *                                                MAX_TOP_K
+ *   GET  /employees/{employeeId}/collaborators   everyone who worked together with an employee
+ *   GET  /employees/{employeeId}/overlaps?project=P&amp;from=2020-01-01&amp;to=2021-01-01
+ *                                                everyone who overlapped with an employee on a
+ *                                                project within [from, to)
+ *   GET  /pairs/active?day=2020-06-01            every pair of rows covering a day
+ *   POST /reload                                 loads the CSV file again, dropping the caches
+ * </pre>
+ * Requests are handled on virtual threads where the JVM has them, and on a cached thread pool
+ * otherwise.
+ */
+public class QueryServer {
+  private static final int DEFAULT_TOP_K = 10;
+  // Larger K values are answered with this many pairs
+  static final int MAX_TOP_K = 1000;
+  private static final DateParser DATE_PARSER = new DateParser();
+
+  private final QueryService queryService;
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private HttpServer server;
+  private ExecutorService executor;
+
+  public QueryServer(QueryService queryService) {
+    this.queryService = queryService;
+  }
+
+  /**
+   * Loads a CSV file into a new application context and serves it on the loopback address until
+   * the JVM shuts down.
+   *
+   * @param pathAndFile The path to the CSV file.
+   * @param port        The port to listen on, 0 for any free port.
+   * @param rejectSink  Where the lines that can't be parsed go, on every load.
+   * @param asOf        The date "NULL" dates stand for, or null for the day of each load.
+   * @throws IOException If an I/O error occurs while reading the file or opening the port.
+   */
+  public static void serve(String pathAndFile, int port, RejectSink rejectSink, LocalDate asOf)
+      throws IOException {
+    try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+        CsvReader.class, BruteForceOverlapEngine.class, SweepLineOverlapFinder.class,
+        PairScanOverlapEngine.class, SolutionsService.class, TopPairsService.class,
+        QueryService.class)) {
+      context.getBean(CsvReader.class).setRejectSink(rejectSink);
+      context.getBean(CsvReader.class).setAsOf(asOf);
+      QueryService queryService = context.getBean(QueryService.class);
+      ColumnarDataset dataset = queryService.load(pathAndFile);
+
+      QueryServer queryServer = new QueryServer(queryService);
+      queryServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+      Runtime.getRuntime().addShutdownHook(new Thread(queryServer::stop));
+      System.out.printf("Serving %s rows of %s projects on http://localhost:%s/%n",
+                        dataset.size(), dataset.projectCount(), queryServer.getPort());
+      queryServer.awaitStop();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Starts listening.
+   *
+   * @param address The address to listen on.
+   * @throws IOException If the address can't be bound.
+   */
+  public void start(InetSocketAddress address) throws IOException {
+    server = HttpServer.create(address, 0);
+    executor = newHandlerExecutor();
+    server.setExecutor(executor);
+    server.createContext("/projects/", this::handleProject);
+    server.createContext("/pairs/top", this::handleTopPairs);
+    server.createContext("/pairs/active", this::handleActivePairs);
+    server.createContext("/employees/", this::handleEmployee);
+    server.createContext("/reload", this::handleReload);
+    server.start();
+  }
+
+  /** Stops listening, letting running requests finish for up to a second. */
+  public void stop() {
+    if (server != null) {
+      server.stop(1);
+      executor.shutdown();
+    }
+    stopped.countDown();
+  }
+
+  /** Returns the port the server listens on. */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /** Waits until the server is stopped. */
+  public void awaitStop() throws InterruptedException {
+    stopped.await();
+  }
+
+  /**
+   * Creates the executor that handles requests: one virtual thread per request on JVMs that have
+   * them, found by reflection so the code still runs on older JVMs, otherwise a cached pool.
+   */
+  static ExecutorService newHandlerExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                              .invoke(null);
+    } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+      // no virtual threads, or preview features are disabled
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  private void handleProject(HttpExchange exchange) throws IOException {
+    String[] parts = pathParts(exchange, "/projects/");
+    if (parts.length != 2 || !parts[1].equals("best-pair")) {
+      respond(exchange, 404, error("Not found"));
+      return;
+    }
+    handle(exchange, "GET", () -> {
+      long projectId = parseId(parts[0]);
+      if (queryService.getDataset().indexOfProject(projectId) < 0) {
+        throw new NoSuchElementException("Unknown project " + projectId);
+      }
+      SolutionResult solutionResult = queryService.getBestPair(projectId);
+      return solutionResult != null ? toJson(solutionResult) : "null";
+    });
+  }
+
+  private void handleTopPairs(HttpExchange exchange) throws IOException {
+    handle(exchange, "GET", () -> {
+      String k = queryParameter(exchange.getRequestURI(), "k");
+      return toJson(queryService.getTopPairs(k != null ? parseTopK(k) : DEFAULT_TOP_K));
+    });
+  }
+
+  private void handleActivePairs(HttpExchange exchange) throws IOException {
+    handle(exchange, "GET", () -> toJson(queryService.getPairsActiveOn(
+        parseDay(queryParameter(exchange.getRequestURI(), "day")))));
+  }
+
+  private void handleEmployee(HttpExchange exchange) throws IOException {
+    String[] parts = pathParts(exchange, "/employees/");
+    if (parts.length == 2 && parts[1].equals("overlaps")) {
+      handleOverlaps(exchange, parts[0]);
+      return;
+    }
+    if (parts.length != 2 || !parts[1].equals("collaborators")) {
+      respond(exchange, 404, error("Not found"));
+      return;
+    }
+    handle(exchange, "GET", () -> {
+      StringBuilder json = new StringBuilder("[");
+      for (CollaborationResult collaboration : queryService.getCollaborators(parseId(parts[0]))) {
+        json.append(json.length() > 1 ? "," : "").append(toJson(collaboration));
+      }
+      return json.append(']').toString();
+    });
+  }
+
+  private void handleOverlaps(HttpExchange exchange, String employeeId) throws IOException {
+    handle(exchange, "GET", () -> {
+      URI uri = exchange.getRequestURI();
+      String project = queryParameter(uri, "project");
+      if (project == null) {
+        throw new IllegalArgumentException("Missing parameter project");
+      }
+      long projectId = parseId(project);
+      if (queryService.getDataset().indexOfProject(projectId) < 0) {
+        throw new NoSuchElementException("Unknown project " + projectId);
+      }
+      return toJson(queryService.getOverlapsWithEmployee(
+          parseId(employeeId), projectId, parseDay(queryParameter(uri, "from")),
+          parseDay(queryParameter(uri, "to"))));
+    });
+  }
+
+  private void handleReload(HttpExchange exchange) throws IOException {
+    handle(exchange, "POST", () -> {
+      ColumnarDataset dataset = queryService.reload();
+      return "{\"rows\":" + dataset.size() + ",\"projects\":" + dataset.projectCount() + "}";
+    });
+  }
+
+  /**
+   * Answers a request with the JSON of a query, or with an error: 405 for a wrong method, 400 for
+   * a bad ID or parameter, 404 for an unknown project and 500 if the query fails otherwise.
+   */
+  private void handle(HttpExchange exchange, String method, Query query) throws IOException {
+    if (!method.equals(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().set("Allow", method);
+      respond(exchange, 405, error("Use " + method));
+      return;
+    }
+    String json;
+    int status = 200;
+    try {
+      json = query.run();
+    } catch (NumberFormatException e) {
+      status = 400;
+      json = error("Invalid number: " + e.getMessage());
+    } catch (NoSuchElementException e) {
+      status = 404;
+      json = error(e.getMessage());
+    } catch (IllegalArgumentException e) {
+      status = 400;
+      json = error(e.getMessage());
+    } catch (IOException | RuntimeException e) {
+      status = 500;
+      json = error(String.valueOf(e.getMessage()));
+    }
+    respond(exchange, status, json);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String json)
+      throws IOException {
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+
+  private static String[] pathParts(HttpExchange exchange, String prefix) {
+    return exchange.getRequestURI().getPath().substring(prefix.length()).split("/");
+  }
+
+  private static String queryParameter(URI uri, String name) {
+    String query = uri.getQuery();
+    if (query == null) {
+      return null;
+    }
+    for (String parameter : query.split("&")) {
+      if (parameter.startsWith(name + "=")) {
+        return parameter.substring(name.length() + 1);
+      }
+    }
+    return null;
+  }
+
+  private static long parseId(String value) {
+    if (!SolutionsService.canParseLong(value)) {
+      throw new NumberFormatException(value);
+    }
+    return Long.parseLong(value);
+  }
+
+  /** Parses the K of a top pairs query, clamped to MAX_TOP_K. */
+  private static int parseTopK(String value) {
+    int k = Integer.parseInt(value.trim());
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be positive: " + k);
+    }
+    return Math.min(k, MAX_TOP_K);
+  }
+
+  private static int parseDay(String value) {
+    int day = value != null ? DATE_PARSER.parseEpochDay(value) : DateParser.INVALID;
+    if (day == DateParser.INVALID) {
+      throw new IllegalArgumentException("Invalid or missing date: " + value);
+    }
+    return day;
+  }
+
+  private static String toJson(SolutionResult solutionResult) {
+    return "{\"projectId\":" + solutionResult.getProjectId()
+        + ",\"employeeOneId\":" + solutionResult.getEmployeeOneId()
+        + ",\"employeeTwoId\":" + solutionResult.getEmployeeTwoId()
+        + ",\"daysWorkedTogether\":" + solutionResult.getDaysWorkedTogether() + "}";
+  }
+
+  private static String toJson(List<SolutionResult> solutionResultList) {
+    StringBuilder json = new StringBuilder("[");
+    for (SolutionResult solutionResult : solutionResultList) {
+      json.append(json.length() > 1 ? "," : "").append(toJson(solutionResult));
+    }
+    return json.append(']').toString();
+  }
+
+  private static String toJson(CollaborationResult collaboration) {
+    StringBuilder json = new StringBuilder()
+        .append("{\"employeeOneId\":").append(collaboration.getEmployeeOneId())
+        .append(",\"employeeTwoId\":").append(collaboration.getEmployeeTwoId())
+        .append(",\"totalDaysWorkedTogether\":")
+        .append(collaboration.getTotalDaysWorkedTogether())
+        .append(",\"projects\":[");
+    String separator = "";
+    for (SolutionResult solutionResult : collaboration.getProjects()) {
+      json.append(separator).append(toJson(solutionResult));
+      separator = ",";
+    }
+    return json.append("]}").toString();
+  }
+
+  private static String error(String message) {
+    return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+  }
+
+  /** A query answered with JSON. */
+  @FunctionalInterface
+  private interface Query {
+    String run() throws IOException;
+  }
+}
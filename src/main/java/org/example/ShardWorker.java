@@ -0,0 +1,37 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import services.OverlapAlgorithm;
+import services.ShardedSolutionsService;
+import services.SolutionsService;
+
+/**
+ * Worker JVM of the sharded mode, started by ShardedSolutionsService with the arguments
+ * {@code <shard file> <result file> [overlap algorithm [brute force cutoff]]}. It solves the
+ * projects of its shard and exits with 0, or with 1 if it fails.
+ */
+public class ShardWorker {
+
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.err.println("Usage: ShardWorker <shard file> <result file> "
+                             + "[overlap algorithm [brute force cutoff]]");
+      System.exit(2);
+    }
+    SolutionsService solutionsService = new SolutionsService();
+    if (args.length > 2) {
+      solutionsService.setOverlapAlgorithm(OverlapAlgorithm.fromOptionValue(args[2]));
+    }
+    if (args.length > 3) {
+      solutionsService.setBruteForceCutoff(Integer.parseInt(args[3]));
+    }
+    try {
+      new ShardedSolutionsService(solutionsService).solveShard(Path.of(args[0]), Path.of(args[1]));
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Shard " + args[0] + " failed: " + e);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package org.example;
+
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import models.SolutionResult;
+
+/**
+ * Shows a list of SolutionResults in a JTable, reading every cell from the list when it is
+ * painted, so only the visible rows are ever turned into cell values.
+ */
+class SolutionResultTableModel extends AbstractTableModel {
+  private static final long serialVersionUID = 1L;
+  private static final String[] COLUMN_NAMES =
+      {"Employee ID #1", "Employee ID #2", "Project ID", "Days worked"};
+  private static final Class<?>[] COLUMN_CLASSES =
+      {Long.class, Long.class, Long.class, Integer.class};
+
+  private final List<SolutionResult> solutionResultList;
+
+  SolutionResultTableModel(List<SolutionResult> solutionResultList) {
+    this.solutionResultList = solutionResultList;
+  }
+
+  @Override
+  public int getRowCount() {
+    return solutionResultList.size();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    return COLUMN_CLASSES[column];
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    SolutionResult result = solutionResultList.get(row);
+    switch (column) {
+      case 0:
+        return result.getEmployeeOneId();
+      case 1:
+        return result.getEmployeeTwoId();
+      case 2:
+        return result.getProjectId();
+      default:
+        return result.getDaysWorkedTogether();
+    }
+  }
+}
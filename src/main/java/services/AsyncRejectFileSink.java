@@ -0,0 +1,146 @@
+package services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes the ignored lines to a reject file on a background thread, so parsing only pays for
+ * counting the line and adding it to a batch. Each record is "lineNumber,REASON,raw line", with
+ * "file:lineNumber" in front for a line of one of several input files.
+ * Batches are handed over through a bounded queue, so a writer that falls behind slows the
+ * parser down instead of filling the heap. Closing writes the pending batch, waits for the
+ * writer and prints the summary.
+ */
+public class AsyncRejectFileSink extends CountingRejectSink {
+  private static final int BATCH_SIZE = 4096;
+  private static final int QUEUED_BATCHES = 16;
+  private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+  // tells the writer thread that no more batches follow
+  private static final List<String> END_OF_BATCHES = new ArrayList<>();
+
+  private final Path path;
+  private final PrintStream out;
+  private final BlockingQueue<List<String>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+  private final Thread writerThread;
+  private volatile IOException writeFailure;
+  private List<String> batch = new ArrayList<>(BATCH_SIZE);
+  private boolean closed;
+
+  /**
+   * Creates the reject file and starts the writer thread.
+   *
+   * @param path The reject file, replaced if it exists.
+   * @throws IOException If the reject file cannot be created.
+   */
+  public AsyncRejectFileSink(Path path) throws IOException {
+    this(path, System.out);
+  }
+
+  /**
+   * Creates the reject file and starts the writer thread.
+   *
+   * @param path The reject file, replaced if it exists.
+   * @param out  The stream the summary is printed to when the sink is closed.
+   * @throws IOException If the reject file cannot be created.
+   */
+  public AsyncRejectFileSink(Path path, PrintStream out) throws IOException {
+    this.path = path;
+    this.out = out;
+    BufferedWriter writer = new BufferedWriter(
+        Files.newBufferedWriter(path, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    writerThread = new Thread(() -> writeBatches(writer), "reject-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  @Override
+  public void reject(RejectReason reason, long lineNumber, String line) {
+    add(reason, String.valueOf(lineNumber), line);
+  }
+
+  @Override
+  public void reject(RejectReason reason, Path source, long lineNumber, String line) {
+    add(reason, source + ":" + lineNumber, line);
+  }
+
+  private synchronized void add(RejectReason reason, String location, String line) {
+    count(reason);
+    batch.add(location + "," + reason.name() + "," + line);
+    if (batch.size() == BATCH_SIZE) {
+      handOver(batch);
+      batch = new ArrayList<>(BATCH_SIZE);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    handOver(batch);
+    handOver(END_OF_BATCHES);
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing " + path);
+    }
+    if (writeFailure != null) {
+      throw writeFailure;
+    }
+    printSummary(out);
+    if (getTotal() > 0) {
+      out.printf("Ignored lines written to %s%n", path);
+    }
+  }
+
+  private void handOver(List<String> lines) {
+    try {
+      batches.put(lines);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(
+          new InterruptedIOException("Interrupted while queueing ignored lines"));
+    }
+  }
+
+  private void writeBatches(BufferedWriter writer) {
+    try (writer) {
+      while (true) {
+        List<String> lines = batches.take();
+        if (lines == END_OF_BATCHES) {
+          return;
+        }
+        if (writeFailure != null) {
+          // keep draining, so the parser is never blocked by a failed writer
+          continue;
+        }
+        try {
+          for (String line : lines) {
+            writer.write(line);
+            writer.newLine();
+          }
+        } catch (IOException e) {
+          writeFailure = e;
+        }
+      }
+    } catch (IOException e) {
+      if (writeFailure == null) {
+        writeFailure = e;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
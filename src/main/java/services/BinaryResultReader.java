@@ -0,0 +1,61 @@
+package services;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import models.SolutionResult;
+
+/** Reads back the SolutionResults a BinaryResultWriter wrote, one at a time. */
+public class BinaryResultReader implements Closeable {
+  private final DataInputStream input;
+
+  /**
+   * Opens the results and checks the magic number.
+   *
+   * @param inputStream The binary results, closed with the reader.
+   * @throws IOException If the stream does not start with BinaryResultWriter.MAGIC.
+   */
+  public BinaryResultReader(InputStream inputStream) throws IOException {
+    this.input = new DataInputStream(new BufferedInputStream(inputStream, 64 * 1024));
+    int magic;
+    try {
+      magic = input.readInt();
+    } catch (EOFException e) {
+      magic = 0;
+    }
+    if (magic != BinaryResultWriter.MAGIC) {
+      input.close();
+      throw new IOException("Not a binary result file");
+    }
+  }
+
+  /**
+   * Reads the next SolutionResult.
+   *
+   * @return The SolutionResult, or null at the end of the results.
+   * @throws IOException If an I/O error occurs, or the last record is cut off.
+   */
+  public SolutionResult read() throws IOException {
+    long projectId;
+    try {
+      projectId = input.readLong();
+    } catch (EOFException e) {
+      return null;
+    }
+    SolutionResult solutionResult = new SolutionResult();
+    solutionResult.setProjectId(projectId);
+    solutionResult.setEmployeeOneId(input.readLong());
+    solutionResult.setEmployeeTwoId(input.readLong());
+    solutionResult.setDaysWorkedTogether(input.readInt());
+    return solutionResult;
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+}
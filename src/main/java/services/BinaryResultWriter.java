@@ -0,0 +1,38 @@
+package services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import models.SolutionResult;
+
+/**
+ * Writes SolutionResults in a compact binary format that BinaryResultReader reads back without
+ * any parsing: the four bytes of MAGIC, then one RECORD_BYTES record per result of
+ * projectId (8 bytes), employeeOneId (8), employeeTwoId (8) and daysWorkedTogether (4), all
+ * big-endian as DataOutputStream writes them.
+ */
+public class BinaryResultWriter extends ResultWriter {
+  // "OVR1"
+  public static final int MAGIC = 0x4F565231;
+  public static final int RECORD_BYTES = 3 * Long.BYTES + Integer.BYTES;
+
+  /**
+   * Creates the writer and writes the magic number.
+   *
+   * @param out The stream to write to.
+   * @throws IOException If the magic number cannot be written.
+   */
+  public BinaryResultWriter(OutputStream out) throws IOException {
+    super(out);
+    writeBinaryInt(MAGIC);
+  }
+
+  @Override
+  protected void format(SolutionResult solutionResult) throws IOException {
+    reserve(RECORD_BYTES);
+    writeBinaryLong(solutionResult.getProjectId());
+    writeBinaryLong(solutionResult.getEmployeeOneId());
+    writeBinaryLong(solutionResult.getEmployeeTwoId());
+    writeBinaryInt(solutionResult.getDaysWorkedTogether());
+  }
+}
@@ -0,0 +1,49 @@
+package services;
+
+import org.springframework.stereotype.Service;
+
+import models.LongestPair;
+
+/**
+ * Finds the pair of employees with the longest overlap on a project by comparing every pair of
+ * employees, in O(n^2). Kept as the reference implementation, and the fastest engine for small
+ * projects since it needs no sorting or extra arrays.
+ */
+@Service
+public class BruteForceOverlapEngine implements OverlapEngine {
+
+  @Override
+  public OverlapAlgorithm getAlgorithm() {
+    return OverlapAlgorithm.BRUTE_FORCE;
+  }
+
+  @Override
+  public LongestPair findLongestPair(long[] employeeIds, int[] dayFrom, int[] dayTo, int start,
+                                     int end) {
+    LongestPair longestPair = new LongestPair();
+    int longestOverlap = 0;
+
+    for (int i = start; i < end - 1; i++) {
+      for (int j = i + 1; j < end; j++) {
+
+        // overlapStarts with the starting date of the employee joining the project last
+        int overlapStart = Math.max(dayFrom[i], dayFrom[j]);
+        // overlapEnds with the end date of the employee leaving the project first
+        int overlapEnd = Math.min(dayTo[i], dayTo[j]);
+
+        // check if there is an overlap between employees
+        int overlapDays = overlapEnd - overlapStart;
+        // update the longest overlap if the current overlap is longer
+        if (overlapDays > longestOverlap) {
+          longestOverlap = overlapDays;
+
+          // update the LongestPair object with the new longest overlap and employee IDs
+          longestPair.setOverlapDays(longestOverlap);
+          longestPair.setEmployeeOneId(employeeIds[i]);
+          longestPair.setEmployeeTwoId(employeeIds[j]);
+        }
+      }
+    }
+    return longestPair;
+  }
+}
@@ -0,0 +1,217 @@
+package services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import models.Checkpoint;
+import models.SolutionResult;
+
+/**
+ * Stores the Checkpoint of an incremental run next to its CSV source ("file.csv" gets
+ * "file.csv.checkpoint").
+ *
+ * <p>The source is expected to only grow by appended lines. A checkpoint is used only if the
+ * source is still at least as long as the consumed offset, the CRC32C hash of the last bytes
+ * before that offset is unchanged, and it was written with the as-of day of the run that loads
+ * it, since "NULL" end dates are stored already resolved to that day (see DateParser). Layout,
+ * little endian:
+ * <pre>
+ *   header   magic "EMPCKPT1", int version, int asOfDay, long consumedOffset,
+ *            long consumedLines, long boundaryHash, int rowCount, int projectCount,
+ *            int resultCount, int unused
+ *   columns  the rows, in the SnapshotStore layout
+ *   long[resultCount]  project IDs
+ *   long[resultCount]  employeeOneId of each project
+ *   long[resultCount]  employeeTwoId of each project
+ *   int[resultCount]   days worked together on each project, 0 if no two employees overlap
+ * </pre>
+ */
+@Service
+public class CheckpointStore {
+  public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+  private static final long MAGIC = 0x45_4D_50_43_4B_50_54_31L; // "EMPCKPT1"
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 56;
+  // Bytes before the consumed offset that must be unchanged for the checkpoint to be used
+  private static final long BOUNDARY_SIZE = 64 * 1024;
+
+  /**
+   * Returns the checkpoint path of a CSV source.
+   *
+   * @param source The CSV file.
+   * @return The path of its checkpoint.
+   */
+  public Path checkpointPathFor(Path source) {
+    return source.resolveSibling(source.getFileName() + CHECKPOINT_SUFFIX);
+  }
+
+  /**
+   * Loads the checkpoint of a source if the source has only been appended to since.
+   *
+   * @param source        The CSV file.
+   * @param sourceChannel The CSV file, open for reading.
+   * @param asOfDay       The epoch day "NULL" dates resolve to in the run.
+   * @return The checkpoint, or null if there is no valid checkpoint.
+   * @throws IOException If an I/O error occurs while reading the files.
+   */
+  public Checkpoint load(Path source, FileChannel sourceChannel, int asOfDay)
+      throws IOException {
+    Path checkpointPath = checkpointPathFor(source);
+    if (!Files.isRegularFile(checkpointPath)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(checkpointPath, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return null;
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                                 .order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+        return null;
+      }
+      int checkpointAsOfDay = header.getInt();
+      long consumedOffset = header.getLong();
+      long consumedLines = header.getLong();
+      long boundaryHash = header.getLong();
+      int rowCount = header.getInt();
+      int projectCount = header.getInt();
+      int resultCount = header.getInt();
+      if (checkpointAsOfDay != asOfDay
+          || consumedOffset > sourceChannel.size()
+          || boundaryHash != boundaryHash(sourceChannel, consumedOffset)) {
+        return null;
+      }
+      long columnsSize = SnapshotStore.columnsSize(rowCount, projectCount);
+      if (channel.size() != HEADER_SIZE + columnsSize + resultsSize(resultCount)) {
+        return null;
+      }
+
+      Checkpoint checkpoint = new Checkpoint();
+      checkpoint.setAsOfDay(asOfDay);
+      checkpoint.setConsumedOffset(consumedOffset);
+      checkpoint.setConsumedLines(consumedLines);
+      checkpoint.setDataset(
+          SnapshotStore.readColumns(channel, HEADER_SIZE, rowCount, projectCount));
+      checkpoint.setResults(readResults(channel, HEADER_SIZE + columnsSize, resultCount));
+      return checkpoint;
+    }
+  }
+
+  /**
+   * Writes the checkpoint of a source. The checkpoint is written to a temporary file first and
+   * moved into place, so readers never see a partial checkpoint.
+   *
+   * @param source        The CSV file.
+   * @param sourceChannel The CSV file, open for reading.
+   * @param checkpoint    The checkpoint.
+   * @throws IOException If an I/O error occurs while writing the checkpoint.
+   */
+  public void save(Path source, FileChannel sourceChannel, Checkpoint checkpoint)
+      throws IOException {
+    Path checkpointPath = checkpointPathFor(source);
+    // a file of its own, so concurrent runs on the same source never write into each other's
+    Path temporary = Files.createTempFile(checkpointPath.toAbsolutePath().getParent(),
+                                          checkpointPath.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                                                  StandardOpenOption.WRITE)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC)
+              .putInt(VERSION)
+              .putInt(checkpoint.getAsOfDay())
+              .putLong(checkpoint.getConsumedOffset())
+              .putLong(checkpoint.getConsumedLines())
+              .putLong(boundaryHash(sourceChannel, checkpoint.getConsumedOffset()))
+              .putInt(checkpoint.getDataset().size())
+              .putInt(checkpoint.getDataset().projectCount())
+              .putInt(checkpoint.getResults().size())
+              .putInt(0)
+              .flip();
+        while (header.hasRemaining()) {
+          channel.write(header, header.position());
+        }
+
+        long position = SnapshotStore.writeColumns(channel, HEADER_SIZE, checkpoint.getDataset());
+        writeResults(channel, position, checkpoint.getResults());
+        channel.force(false);
+      }
+      Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+  }
+
+  /**
+   * Hashes the last BOUNDARY_SIZE bytes before an offset, which a rewritten file is very
+   * unlikely to keep.
+   */
+  private static long boundaryHash(FileChannel sourceChannel, long offset) throws IOException {
+    return SnapshotStore.contentHash(sourceChannel, Math.max(0, offset - BOUNDARY_SIZE), offset);
+  }
+
+  private static long resultsSize(int resultCount) {
+    return (3L * Long.BYTES + Integer.BYTES) * resultCount;
+  }
+
+  private static void writeResults(FileChannel channel, long position,
+                                   HashMap<Long, SolutionResult> results) throws IOException {
+    int resultCount = results.size();
+    long[] projectIds = new long[resultCount];
+    long[] employeeOneIds = new long[resultCount];
+    long[] employeeTwoIds = new long[resultCount];
+    int[] days = new int[resultCount];
+    int i = 0;
+    for (Map.Entry<Long, SolutionResult> entry : results.entrySet()) {
+      projectIds[i] = entry.getKey();
+      SolutionResult solutionResult = entry.getValue();
+      if (solutionResult != null) {
+        employeeOneIds[i] = solutionResult.getEmployeeOneId();
+        employeeTwoIds[i] = solutionResult.getEmployeeTwoId();
+        days[i] = solutionResult.getDaysWorkedTogether();
+      }
+      i++;
+    }
+    position = SnapshotStore.writeLongs(channel, position, projectIds, resultCount);
+    position = SnapshotStore.writeLongs(channel, position, employeeOneIds, resultCount);
+    position = SnapshotStore.writeLongs(channel, position, employeeTwoIds, resultCount);
+    SnapshotStore.writeInts(channel, position, days, resultCount);
+  }
+
+  private static HashMap<Long, SolutionResult> readResults(FileChannel channel, long position,
+                                                           int resultCount) throws IOException {
+    long[] projectIds = new long[resultCount];
+    long[] employeeOneIds = new long[resultCount];
+    long[] employeeTwoIds = new long[resultCount];
+    int[] days = new int[resultCount];
+    position = SnapshotStore.readLongs(channel, position, projectIds);
+    position = SnapshotStore.readLongs(channel, position, employeeOneIds);
+    position = SnapshotStore.readLongs(channel, position, employeeTwoIds);
+    SnapshotStore.readInts(channel, position, days);
+
+    HashMap<Long, SolutionResult> results = new HashMap<>(resultCount * 4 / 3 + 1);
+    for (int i = 0; i < resultCount; i++) {
+      SolutionResult solutionResult = null;
+      if (days[i] > 0) {
+        solutionResult = new SolutionResult();
+        solutionResult.setProjectId(projectIds[i]);
+        solutionResult.setEmployeeOneId(employeeOneIds[i]);
+        solutionResult.setEmployeeTwoId(employeeTwoIds[i]);
+        solutionResult.setDaysWorkedTogether(days[i]);
+      }
+      results.put(projectIds[i], solutionResult);
+    }
+    return results;
+  }
+}
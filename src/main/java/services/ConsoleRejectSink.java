@@ -0,0 +1,64 @@
+package services;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+/**
+ * Prints the first ignored lines to the console and only counts the rest, so a file with many
+ * bad lines is not slowed down by console output. Closing prints the summary. Lines go to the
+ * standard output unless another stream is given, such as the standard error while the results
+ * are written to the standard output.
+ */
+public class ConsoleRejectSink extends CountingRejectSink {
+  public static final int DEFAULT_PRINT_LIMIT = 20;
+
+  private final PrintStream out;
+  private final int printLimit;
+
+  public ConsoleRejectSink() {
+    this(DEFAULT_PRINT_LIMIT);
+  }
+
+  /**
+   * @param printLimit Number of ignored lines printed before the rest are only counted.
+   */
+  public ConsoleRejectSink(int printLimit) {
+    this(System.out, printLimit);
+  }
+
+  /**
+   * @param out        The stream the ignored lines and the summary are printed to.
+   * @param printLimit Number of ignored lines printed before the rest are only counted.
+   */
+  public ConsoleRejectSink(PrintStream out, int printLimit) {
+    this.out = out;
+    this.printLimit = printLimit;
+  }
+
+  @Override
+  public void reject(RejectReason reason, long lineNumber, String line) {
+    print(reason, String.valueOf(lineNumber), line);
+  }
+
+  @Override
+  public void reject(RejectReason reason, Path source, long lineNumber, String line) {
+    print(reason, source + ":" + lineNumber, line);
+  }
+
+  private void print(RejectReason reason, String location, String line) {
+    count(reason);
+    long total = getTotal();
+    if (total <= printLimit) {
+      out.printf("Ignored line %s (%s): %s%n", location, reason.getDescription(), line);
+      if (total == printLimit) {
+        out.println("Further ignored lines are only counted");
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    printSummary(out);
+  }
+}
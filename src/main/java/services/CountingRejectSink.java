@@ -0,0 +1,69 @@
+package services;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A RejectSink that counts the ignored lines by reason and can print a summary of them. */
+public abstract class CountingRejectSink implements RejectSink {
+  private final LongAdder[] counts = new LongAdder[RejectReason.values().length];
+
+  protected CountingRejectSink() {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Counts an ignored line.
+   *
+   * @param reason Why the line was ignored.
+   */
+  protected void count(RejectReason reason) {
+    counts[reason.ordinal()].increment();
+  }
+
+  /**
+   * Returns the number of lines ignored for a reason.
+   *
+   * @param reason The reason.
+   * @return The number of lines.
+   */
+  public long getCount(RejectReason reason) {
+    return counts[reason.ordinal()].sum();
+  }
+
+  /**
+   * Returns the number of ignored lines.
+   *
+   * @return The number of lines.
+   */
+  public long getTotal() {
+    long total = 0;
+    for (LongAdder count : counts) {
+      total += count.sum();
+    }
+    return total;
+  }
+
+  /**
+   * Prints how many lines were ignored for each reason, if any were.
+   *
+   * @param out The stream to print to.
+   */
+  public void printSummary(PrintStream out) {
+    long total = getTotal();
+    if (total == 0) {
+      return;
+    }
+    StringBuilder summary = new StringBuilder("Ignored ").append(total).append(" lines:");
+    String separator = " ";
+    for (RejectReason reason : RejectReason.values()) {
+      long count = getCount(reason);
+      if (count > 0) {
+        summary.append(separator).append(count).append(' ').append(reason.getDescription());
+        separator = ", ";
+      }
+    }
+    out.println(summary);
+  }
+}
@@ -1,21 +1,58 @@
 package services;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
 
+import models.ColumnarDataset;
 import models.EmployeeWithProject;
 
 @Service
 public class CsvReader {
-  // Separator used to split CSV lines into elements
-  private final String SEPARATOR = ",";
+  // Parses the file bytes in place from a memory-mapped FileChannel
+  private final MappedCsvParser mappedCsvParser = new MappedCsvParser();
+  // Keeps parsed datasets in binary snapshots next to their CSV files
+  private final SnapshotStore snapshotStore = new SnapshotStore();
+  // Where a snapshot that can't be written is reported
+  private PrintStream diagnostics = System.err;
+
+  /**
+   * Sets where the lines that can't be parsed go.
+   *
+   * @param rejectSink The RejectSink.
+   */
+  public void setRejectSink(RejectSink rejectSink) {
+    mappedCsvParser.setRejectSink(rejectSink);
+  }
+
+  /**
+   * Sets where warnings that don't fail a read, such as a snapshot that can't be written, go.
+   *
+   * @param diagnostics The stream the warnings are printed to.
+   */
+  public void setDiagnostics(PrintStream diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Sets the date "NULL" dates stand for.
+   *
+   * @param asOf The as-of date, or null for the day each parse starts.
+   */
+  public void setAsOf(LocalDate asOf) {
+    mappedCsvParser.setAsOf(asOf);
+  }
 
   /**
    * Reads a CSV file located at the specified path and converts its content into a list of
@@ -27,22 +64,163 @@ public class CsvReader {
    */
 
   public List<EmployeeWithProject> readCsv(String pathAndFile) throws IOException {
-    SolutionsService solutionsService = new SolutionsService();
-    List<EmployeeWithProject> employeeWithProjectList = new ArrayList<>();
-    try (
-        BufferedReader br = Files.newBufferedReader(Path.of(pathAndFile), StandardCharsets.UTF_8)) {
-      String line;
-      while ((line = br.readLine()) != null) {
-        // Remove extra spaces after commas for consistent parsing
-        String formattedLine = line.replaceAll(",\\s*", ",");
-        String[] lineElements = formattedLine.split(SEPARATOR);
-        EmployeeWithProject employeeWithProject = solutionsService.returnSolutionFromLine(
-            lineElements);
-        if (employeeWithProject != null) {
-          employeeWithProjectList.add(employeeWithProject);
+    return mappedCsvParser.parse(Path.of(pathAndFile));
+  }
+
+  /**
+   * Reads a CSV file located at the specified path in parallel, parsing newline aligned byte
+   * ranges of the file on the workers of the pool.
+   *
+   * @param pathAndFile The path to the CSV file.
+   * @param pool        The ForkJoinPool that parses the file.
+   * @return A list of EmployeeWithProject objects in the same order as {@link #readCsv(String)}.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public List<EmployeeWithProject> readCsv(String pathAndFile, ForkJoinPool pool)
+      throws IOException {
+    return mappedCsvParser.parseParallel(Path.of(pathAndFile), pool);
+  }
+
+  /**
+   * Reads a CSV file located at the specified path into a ColumnarDataset, which keeps the rows
+   * in primitive arrays sorted by project instead of EmployeeWithProject objects.
+   *
+   * @param pathAndFile The path to the CSV file.
+   * @return A ColumnarDataset holding the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public ColumnarDataset readColumnar(String pathAndFile) throws IOException {
+    return mappedCsvParser.parseColumnar(Path.of(pathAndFile));
+  }
+
+  /**
+   * Reads a CSV file located at the specified path into a ColumnarDataset in parallel.
+   *
+   * @param pathAndFile The path to the CSV file.
+   * @param pool        The ForkJoinPool that parses the file.
+   * @return A ColumnarDataset holding the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public ColumnarDataset readColumnar(String pathAndFile, ForkJoinPool pool) throws IOException {
+    return mappedCsvParser.parseColumnarParallel(Path.of(pathAndFile), pool);
+  }
+
+  /**
+   * Reads several CSV files into one ColumnarDataset, grouping the rows of a project together
+   * even if they are spread over the files. Files ending in ".gz" are decompressed while read.
+   *
+   * @param sources The CSV files, as returned by {@link #resolveInputs(List)}.
+   * @param pool    The ForkJoinPool that reads the files in parallel, or null to read them one
+   *                by one.
+   * @return A ColumnarDataset holding the data read from all files.
+   * @throws IOException If an I/O error occurs while reading a file.
+   */
+  public ColumnarDataset readColumnar(List<Path> sources, ForkJoinPool pool) throws IOException {
+    return mappedCsvParser.parseColumnarFiles(sources, pool);
+  }
+
+  /**
+   * Expands input arguments into the CSV files they name, in argument order:
+   * <ul>
+   *   <li>a file is taken as is,</li>
+   *   <li>a directory gives its ".csv" and ".csv.gz" files, sorted by name,</li>
+   *   <li>a glob such as "exports/*.csv" or "exports/**&#47;*.csv.gz" gives the files under its
+   *       directory part that match the rest, sorted by path.</li>
+   * </ul>
+   *
+   * @param inputs The files, directories and globs.
+   * @return The CSV files.
+   * @throws IOException If an I/O error occurs while listing a directory.
+   * @throws IllegalArgumentException If an input does not exist or a glob matches no file.
+   */
+  public List<Path> resolveInputs(List<String> inputs) throws IOException {
+    List<Path> sources = new ArrayList<>();
+    for (String input : inputs) {
+      int globStart = indexOfGlob(input);
+      if (globStart >= 0) {
+        sources.addAll(resolveGlob(input, globStart));
+      } else if (Files.isDirectory(Path.of(input))) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(input))) {
+          List<Path> csvFiles = new ArrayList<>();
+          for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (Files.isRegularFile(file) && (name.endsWith(".csv") || name.endsWith(".csv.gz"))) {
+              csvFiles.add(file);
+            }
+          }
+          csvFiles.sort(null);
+          sources.addAll(csvFiles);
         }
+      } else if (Files.isRegularFile(Path.of(input))) {
+        sources.add(Path.of(input));
+      } else {
+        throw new IllegalArgumentException("No such file or directory: " + input);
+      }
+    }
+    return sources;
+  }
+
+  private static int indexOfGlob(String input) {
+    for (int i = 0; i < input.length(); i++) {
+      if ("*?[{".indexOf(input.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Lists the files under the directory part of a glob, the part before the last separator
+   * ahead of the first glob character, whose paths relative to it match the rest of the glob.
+   */
+  private static List<Path> resolveGlob(String glob, int globStart) throws IOException {
+    int separator = Math.max(glob.lastIndexOf('/', globStart), glob.lastIndexOf('\\', globStart));
+    Path directory = Path.of(separator >= 0 ? glob.substring(0, separator + 1) : ".");
+    PathMatcher matcher =
+        directory.getFileSystem().getPathMatcher("glob:" + glob.substring(separator + 1));
+    List<Path> matches;
+    try (Stream<Path> files = Files.walk(directory)) {
+      matches = files.filter(Files::isRegularFile)
+                     .filter(file -> matcher.matches(directory.relativize(file)))
+                     .sorted()
+                     .collect(Collectors.toList());
+    }
+    if (matches.isEmpty()) {
+      throw new IllegalArgumentException("No files match " + glob);
+    }
+    return matches;
+  }
+
+  /**
+   * Reads a CSV file into a ColumnarDataset through its binary snapshot. The snapshot is loaded
+   * if the file has not changed since it was written, otherwise the file is parsed and a new
+   * snapshot is written next to it. A snapshot that can't be written is reported to the
+   * diagnostics stream and doesn't fail the read.
+   *
+   * @param pathAndFile The path to the CSV file.
+   * @param pool        The ForkJoinPool that parses the file, or null to parse it sequentially.
+   * @return A ColumnarDataset holding the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public ColumnarDataset readColumnarWithSnapshot(String pathAndFile, ForkJoinPool pool)
+      throws IOException {
+    Path source = Path.of(pathAndFile);
+    // taken before the parse, so a source changed while it is parsed never matches the snapshot
+    SnapshotStore.Fingerprint fingerprint = snapshotStore.fingerprint(source);
+    // one as-of day for the parse and the snapshot it is checked against or stored in
+    DateParser dateParser = mappedCsvParser.newDateParser();
+    ColumnarDataset dataset = snapshotStore.load(source, fingerprint, dateParser.getAsOfDay());
+    if (dataset == null) {
+      dataset = pool != null
+          ? mappedCsvParser.parseColumnarParallel(source, pool, dateParser)
+          : mappedCsvParser.parseColumnar(source, dateParser);
+      try {
+        snapshotStore.save(source, fingerprint, dateParser.getAsOfDay(), dataset);
+      } catch (IOException e) {
+        // the snapshot only saves the next run a parse
+        diagnostics.println("Snapshot of " + source + " not written: " + e);
       }
     }
-    return employeeWithProjectList;
+    return dataset;
   }
 }
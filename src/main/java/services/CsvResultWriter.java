@@ -0,0 +1,37 @@
+package services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import models.SolutionResult;
+
+/**
+ * Writes SolutionResults as CSV: a header line, then one
+ * "projectId,employeeOneId,employeeTwoId,daysWorkedTogether" row per result.
+ */
+public class CsvResultWriter extends ResultWriter {
+  public static final String HEADER = "ProjectId,EmpId1,EmpId2,DaysWorkedTogether";
+
+  /**
+   * Creates the writer and writes the header line.
+   *
+   * @param out The stream to write to.
+   * @throws IOException If the header cannot be written.
+   */
+  public CsvResultWriter(OutputStream out) throws IOException {
+    super(out);
+    writeBytes(ascii(HEADER + "\n"));
+  }
+
+  @Override
+  protected void format(SolutionResult solutionResult) throws IOException {
+    writeDecimal(solutionResult.getProjectId());
+    writeByte(',');
+    writeDecimal(solutionResult.getEmployeeOneId());
+    writeByte(',');
+    writeDecimal(solutionResult.getEmployeeTwoId());
+    writeByte(',');
+    writeDecimal(solutionResult.getDaysWorkedTogether());
+    writeByte('\n');
+  }
+}
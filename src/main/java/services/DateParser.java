@@ -0,0 +1,220 @@
+package services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Parses CSV date fields to epoch days in a single pass, without exceptions.
+ *
+ * <p>The supported formats are tried in order: yyyy-MM-dd (ISO), yyyy/MM/dd, dd/MM/yyyy and
+ * dd.MM.yyyy. MM/dd/yyyy is not supported since it cannot be told apart from dd/MM/yyyy. As with
+ * the yyyy-MM-dd formatter used before, a day past the end of its month means the last day of
+ * that month, e.g. 2013-02-30 is 2013-02-28. "NULL" means the as-of day of the parser.
+ *
+ * <p>The as-of day is given to the constructor, or resolved to today when the parser is created
+ * and kept from then on. A run creates one parser, so a run that crosses midnight resolves
+ * every "NULL" to the same day, and the next run resolves today again.
+ */
+public class DateParser {
+  // Returned for text that is not a date in any supported format
+  public static final int INVALID = Integer.MIN_VALUE;
+
+  // Supported formats, in the order they are tried - compiled once and shared by all parsers
+  private static final List<DateLayout> LAYOUTS = List.of(
+      new DateLayout("yyyy-MM-dd"),
+      new DateLayout("yyyy/MM/dd"),
+      new DateLayout("dd/MM/yyyy"),
+      new DateLayout("dd.MM.yyyy"));
+
+  private static final byte[] NULL_DATE = "NULL".getBytes(StandardCharsets.US_ASCII);
+  // Days from 0000-01-01 to 1970-01-01, as in LocalDate
+  private static final int DAYS_0000_TO_1970 = (146097 * 5) - (30 * 365 + 7);
+
+  // Epoch day "NULL" dates resolve to
+  private final int asOfDay;
+
+  /** Creates a parser that resolves "NULL" dates to today. */
+  public DateParser() {
+    this(null);
+  }
+
+  /**
+   * Creates a parser that resolves "NULL" dates to an as-of date.
+   *
+   * @param asOf The as-of date, or null for today.
+   */
+  public DateParser(LocalDate asOf) {
+    this.asOfDay = (int) (asOf != null ? asOf : LocalDate.now()).toEpochDay();
+  }
+
+  /**
+   * Returns the date "NULL" dates resolve to.
+   *
+   * @return The as-of date.
+   */
+  public LocalDate getAsOf() {
+    return LocalDate.ofEpochDay(asOfDay);
+  }
+
+  /**
+   * Returns the epoch day "NULL" dates resolve to, which decides the days a stored dataset with
+   * resolved "NULL" dates is valid for.
+   *
+   * @return The epoch day of the as-of date.
+   */
+  public int getAsOfDay() {
+    return asOfDay;
+  }
+
+  /**
+   * Parses a date String to an epoch day.
+   *
+   * @param dateString String to be parsed, null or "NULL" for the as-of day
+   * @return The epoch day of the date, or INVALID if the String is not a supported date
+   */
+  public int parseEpochDay(CharSequence dateString) {
+    if (dateString == null) {
+      return asOfDay;
+    }
+    int length = dateString.length();
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    for (int i = 0; i < length; i++) {
+      char c = dateString.charAt(i);
+      // characters outside ASCII can never be part of a supported date
+      buffer.put(i, c < 0x80 ? (byte) c : (byte) '?');
+    }
+    return parseEpochDay(buffer, 0, length);
+  }
+
+  /**
+   * Parses the ASCII bytes of a date field in place to an epoch day.
+   *
+   * @param buffer Buffer holding the field.
+   * @param from   Index of the first byte of the field.
+   * @param to     Index just past the last byte of the field.
+   * @return The epoch day of the date, or INVALID if the field is not a supported date
+   */
+  public int parseEpochDay(ByteBuffer buffer, int from, int to) {
+    if (matchesNull(buffer, from, to)) {
+      //if date is null - use the as-of day
+      return asOfDay;
+    }
+    for (DateLayout layout : LAYOUTS) {
+      int epochDay = layout.parse(buffer, from, to);
+      if (epochDay != INVALID) {
+        return epochDay;
+      }
+    }
+    return INVALID;
+  }
+
+  private static boolean matchesNull(ByteBuffer buffer, int from, int to) {
+    if (to - from != NULL_DATE.length) {
+      return false;
+    }
+    for (int i = 0; i < NULL_DATE.length; i++) {
+      if (buffer.get(from + i) != NULL_DATE[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes the epoch day of a valid date with the same arithmetic as LocalDate.toEpochDay,
+   * without creating a LocalDate.
+   */
+  static int toEpochDay(int year, int month, int day) {
+    long y = year;
+    long total = 365 * y;
+    total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+    total += (367 * month - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total--;
+      if (!isLeapYear(year)) {
+        total--;
+      }
+    }
+    return (int) (total - DAYS_0000_TO_1970);
+  }
+
+  private static boolean isLeapYear(int year) {
+    return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int monthLength(int year, int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * Fixed width date format made of a four digit year, a two digit month, a two digit day and
+   * single character separators, compiled from a pattern like "dd/MM/yyyy".
+   */
+  private static final class DateLayout {
+    private final int length;
+    private final int yearAt;
+    private final int monthAt;
+    private final int dayAt;
+    // separator character by position, 0 where the pattern has a digit
+    private final byte[] separators;
+
+    DateLayout(String pattern) {
+      length = pattern.length();
+      yearAt = pattern.indexOf("yyyy");
+      monthAt = pattern.indexOf("MM");
+      dayAt = pattern.indexOf("dd");
+      separators = new byte[length];
+      for (int i = 0; i < length; i++) {
+        char c = pattern.charAt(i);
+        if (c != 'y' && c != 'M' && c != 'd') {
+          separators[i] = (byte) c;
+        }
+      }
+    }
+
+    /**
+     * Parses a field in this format.
+     *
+     * @return The epoch day, or INVALID if the field is not a valid date in this format
+     */
+    int parse(ByteBuffer buffer, int from, int to) {
+      if (to - from != length) {
+        return INVALID;
+      }
+      for (int i = 0; i < length; i++) {
+        byte b = buffer.get(from + i);
+        if (separators[i] != 0 ? b != separators[i] : b < '0' || b > '9') {
+          return INVALID;
+        }
+      }
+      int year = digits(buffer, from + yearAt, 4);
+      int month = digits(buffer, from + monthAt, 2);
+      int day = digits(buffer, from + dayAt, 2);
+      if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+        return INVALID;
+      }
+      return toEpochDay(year, month, Math.min(day, monthLength(year, month)));
+    }
+
+    private static int digits(ByteBuffer buffer, int at, int count) {
+      int value = 0;
+      for (int i = at; i < at + count; i++) {
+        value = value * 10 + (buffer.get(i) - '0');
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,420 @@
+package services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Service;
+
+import models.ColumnarDataset;
+import models.SolutionResult;
+
+/**
+ * Solves the projects of a CSV file larger than the heap, keeping memory use within a budget.
+ *
+ * <p>Parsed rows are collected until the budget's worth of rows is reached, grouped by project
+ * and spilled to a temporary run file. The runs are then merged with a k-way merge on
+ * (projectId, run number), so each project's rows come together as one contiguous block in file
+ * order, and every block is solved in turn and released. Since blocks keep file order, the
+ * results, including ties, are the same as the in-memory getSolutionResultsBasedOnProjects.
+ *
+ * <p>The read buffers of the merge get a fixed share of the budget and at least MIN_BUFFER_SIZE
+ * bytes each, which bounds how many runs one merge can read. With more runs than that, groups of
+ * consecutive runs are first merged into longer runs, pass after pass, until one merge can read
+ * them all; merging consecutive runs keeps every project's rows in file order.
+ *
+ * <p>A single project's rows must still fit in memory while it is solved.
+ */
+@Service
+public class ExternalSortSolutionsService {
+  // Heap bytes a buffered row takes: its columns twice, while a run is grouped, plus slack for
+  // the growth of the buffers
+  private static final int BUFFERED_ROW_BYTES = 64;
+  // Share of the budget used by the read buffers of the runs while merging
+  private static final int MERGE_BUFFER_SHARE = 4;
+  private static final int MIN_BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_BUFFER_SIZE = 8 * 1024 * 1024;
+  // Smallest budget whose merge share holds the buffers of two runs and a merged run
+  public static final long MIN_MAX_MEMORY = 3L * MERGE_BUFFER_SHARE * MIN_BUFFER_SIZE;
+
+  private final MappedCsvParser mappedCsvParser = new MappedCsvParser();
+  private final SolutionsService solutionsService;
+
+  public ExternalSortSolutionsService() {
+    this(new SolutionsService());
+  }
+
+  public ExternalSortSolutionsService(SolutionsService solutionsService) {
+    this.solutionsService = solutionsService;
+  }
+
+  /**
+   * Sets where the lines that can't be parsed go.
+   *
+   * @param rejectSink The RejectSink.
+   */
+  public void setRejectSink(RejectSink rejectSink) {
+    mappedCsvParser.setRejectSink(rejectSink);
+  }
+
+  /**
+   * Sets the date "NULL" dates stand for.
+   *
+   * @param asOf The as-of date, or null for the day each parse starts.
+   */
+  public void setAsOf(LocalDate asOf) {
+    mappedCsvParser.setAsOf(asOf);
+  }
+
+  /**
+   * Parses a memory size such as "512m", "2g", "65536k" or "1000000" (bytes).
+   *
+   * @param value The size.
+   * @return The size in bytes.
+   * @throws IllegalArgumentException If the size is not a positive number with an optional k, m
+   *                                  or g suffix.
+   */
+  public static long parseMemorySize(String value) {
+    String size = value.trim().toLowerCase(Locale.ROOT);
+    long unit = 1;
+    if (size.endsWith("k") || size.endsWith("m") || size.endsWith("g")) {
+      unit = size.endsWith("k") ? 1L << 10 : size.endsWith("m") ? 1L << 20 : 1L << 30;
+      size = size.substring(0, size.length() - 1);
+    }
+    if (!SolutionsService.canParseLong(size) || Long.parseLong(size) <= 0) {
+      throw new IllegalArgumentException("Invalid memory size: " + value);
+    }
+    return Long.parseLong(size) * unit;
+  }
+
+  /**
+   * Generate a SolutionResult object of each project of a CSV file.
+   *
+   * @param  source The CSV file
+   * @param  maxMemory Heap bytes the rows may take at a time
+   * @return A List of SolutionResult instances for each project, ordered by project ID
+   * @throws IOException If an I/O error occurs while reading the file or the runs
+   * @throws IllegalArgumentException If maxMemory is less than MIN_MAX_MEMORY
+   */
+  public List<SolutionResult> getSolutionResults(Path source, long maxMemory)
+      throws IOException {
+    List<SolutionResult> solutionResultList = new ArrayList<>();
+    solve(source, maxMemory, solutionResultList::add);
+    return solutionResultList;
+  }
+
+  /**
+   * Solves the projects of a CSV file, handing each SolutionResult to a consumer in project ID
+   * order as soon as it is solved.
+   *
+   * @param  source The CSV file
+   * @param  maxMemory Heap bytes the rows may take at a time
+   * @param  resultConsumer Receives the SolutionResult of every project on which two employees
+   *         overlap
+   * @throws IOException If an I/O error occurs while reading the file or the runs
+   * @throws IllegalArgumentException If maxMemory is less than MIN_MAX_MEMORY
+   */
+  public void solve(Path source, long maxMemory, Consumer<SolutionResult> resultConsumer)
+      throws IOException {
+    if (maxMemory < MIN_MAX_MEMORY) {
+      throw new IllegalArgumentException("Memory budget must be at least " + MIN_MAX_MEMORY
+                                             + " bytes: " + maxMemory);
+    }
+    int runRows = (int) Math.min(Integer.MAX_VALUE - 8, maxMemory / BUFFERED_ROW_BYTES);
+    Path runDirectory = Files.createTempDirectory("overlap-runs");
+    List<Path> runs = new ArrayList<>();
+    try {
+      // spill a run every runRows rows
+      ColumnarDataset.Builder[] buffer = {new ColumnarDataset.Builder()};
+      try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+        mappedCsvParser.parseRange(channel, 0, channel.size(),
+                                   (employeeId, projectId, dayFrom, dayTo) -> {
+                                     buffer[0].add(employeeId, projectId, dayFrom, dayTo);
+                                     if (buffer[0].size() == runRows) {
+                                       runs.add(spillRun(runDirectory, runs.size(), buffer[0]));
+                                       buffer[0] = new ColumnarDataset.Builder();
+                                     }
+                                   });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      if (runs.isEmpty()) {
+        // everything fit into one run, so solve it without touching the disk
+        ColumnarDataset dataset = buffer[0].build();
+        for (int project = 0; project < dataset.projectCount(); project++) {
+          SolutionResult solutionResult = solutionsService.solveProject(dataset, project);
+          if (solutionResult != null) {
+            resultConsumer.accept(solutionResult);
+          }
+        }
+        return;
+      }
+      if (buffer[0].size() > 0) {
+        runs.add(spillRun(runDirectory, runs.size(), buffer[0]));
+      }
+      buffer[0] = null;
+      mergeRuns(mergePasses(runDirectory, runs, maxMemory), maxMemory, resultConsumer);
+    } finally {
+      for (Path run : runs) {
+        Files.deleteIfExists(run);
+      }
+      Files.deleteIfExists(runDirectory);
+    }
+  }
+
+  /**
+   * Groups the buffered rows by project and writes them as a run: the number of projects, then
+   * for every project, in project ID order, its ID, its row count and the employeeId, dayFrom and
+   * dayTo of each of its rows in file order.
+   */
+  private Path spillRun(Path runDirectory, int runNumber, ColumnarDataset.Builder rows) {
+    Path run = runDirectory.resolve("run-" + runNumber + ".bin");
+    ColumnarDataset dataset = rows.build();
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(run), MAX_BUFFER_SIZE))) {
+      output.writeInt(dataset.projectCount());
+      for (int project = 0; project < dataset.projectCount(); project++) {
+        output.writeLong(dataset.projectIdAt(project));
+        output.writeInt(dataset.projectSize(project));
+        for (int row = dataset.projectStart(project); row < dataset.projectEnd(project); row++) {
+          output.writeLong(employeeIds[row]);
+          output.writeInt(dayFrom[row]);
+          output.writeInt(dayTo[row]);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return run;
+  }
+
+  /**
+   * Merges groups of consecutive runs into longer runs until a single merge within the budget
+   * can read all of them. Runs that are merged are deleted, and every new run is added to
+   * allRuns, so it is deleted with the others.
+   *
+   * @return The runs left for the final merge, in file order
+   */
+  private static List<Path> mergePasses(Path runDirectory, List<Path> allRuns, long maxMemory)
+      throws IOException {
+    // every input run and the merged run take a buffer of at least MIN_BUFFER_SIZE
+    int fanIn = (int) Math.min(Integer.MAX_VALUE,
+                               maxMemory / MERGE_BUFFER_SHARE / MIN_BUFFER_SIZE - 1);
+    List<Path> runs = new ArrayList<>(allRuns);
+    while (runs.size() > fanIn) {
+      List<Path> mergedRuns = new ArrayList<>();
+      for (int first = 0; first < runs.size(); first += fanIn) {
+        List<Path> group = runs.subList(first, Math.min(runs.size(), first + fanIn));
+        if (group.size() == 1) {
+          mergedRuns.add(group.get(0));
+          continue;
+        }
+        Path mergedRun = runDirectory.resolve("run-" + allRuns.size() + ".bin");
+        allRuns.add(mergedRun);
+        mergeToRun(group, mergedRun, bufferSize(maxMemory, group.size() + 1));
+        for (Path run : group) {
+          Files.delete(run);
+        }
+        mergedRuns.add(mergedRun);
+      }
+      runs = mergedRuns;
+    }
+    return runs;
+  }
+
+  /**
+   * Merges runs into one run, joining the blocks of a project from the runs in run order.
+   * Rows are copied through without being buffered.
+   */
+  private static void mergeToRun(List<Path> runs, Path mergedRun, int bufferSize)
+      throws IOException {
+    List<RunReader> readers = new ArrayList<>(runs.size());
+    int projectCount = 0;
+    try (DataOutputStream output = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(mergedRun), bufferSize))) {
+      PriorityQueue<RunReader> heads = openRuns(runs, bufferSize, readers);
+      // the number of projects is only known at the end
+      output.writeInt(0);
+      List<RunReader> blocks = new ArrayList<>();
+      while (!heads.isEmpty()) {
+        long projectId = heads.peek().projectId;
+        int rows = 0;
+        blocks.clear();
+        while (!heads.isEmpty() && heads.peek().projectId == projectId) {
+          RunReader reader = heads.poll();
+          rows += reader.blockSize;
+          blocks.add(reader);
+        }
+        output.writeLong(projectId);
+        output.writeInt(rows);
+        for (RunReader reader : blocks) {
+          reader.copyBlock(output);
+          if (reader.nextBlock()) {
+            heads.add(reader);
+          }
+        }
+        projectCount++;
+      }
+    } finally {
+      for (RunReader reader : readers) {
+        reader.input.close();
+      }
+    }
+    try (FileChannel channel = FileChannel.open(mergedRun, StandardOpenOption.WRITE)) {
+      ByteBuffer count = ByteBuffer.allocate(Integer.BYTES).putInt(projectCount).flip();
+      while (count.hasRemaining()) {
+        channel.write(count, count.position());
+      }
+    }
+  }
+
+  /**
+   * Merges the runs project by project, taking the blocks of a project from the runs in run
+   * order, and solves each merged project.
+   */
+  private void mergeRuns(List<Path> runs, long maxMemory,
+                         Consumer<SolutionResult> resultConsumer) throws IOException {
+    List<RunReader> readers = new ArrayList<>(runs.size());
+    try {
+      PriorityQueue<RunReader> heads = openRuns(runs, bufferSize(maxMemory, runs.size()),
+                                                readers);
+      ProjectBlock block = new ProjectBlock();
+      while (!heads.isEmpty()) {
+        long projectId = heads.peek().projectId;
+        block.clear();
+        while (!heads.isEmpty() && heads.peek().projectId == projectId) {
+          RunReader reader = heads.poll();
+          reader.readBlock(block);
+          if (reader.nextBlock()) {
+            heads.add(reader);
+          }
+        }
+        SolutionResult solutionResult = solutionsService.solveProject(
+            projectId, block.employeeIds, block.dayFrom, block.dayTo, 0, block.size);
+        if (solutionResult != null) {
+          resultConsumer.accept(solutionResult);
+        }
+      }
+    } finally {
+      for (RunReader reader : readers) {
+        reader.input.close();
+      }
+    }
+  }
+
+  /**
+   * Opens the runs, adding their readers to readers so the caller can close them.
+   *
+   * @return The readers positioned on their first block, by project ID and then run order
+   */
+  private static PriorityQueue<RunReader> openRuns(List<Path> runs, int bufferSize,
+                                                   List<RunReader> readers) throws IOException {
+    PriorityQueue<RunReader> heads = new PriorityQueue<>(
+        (a, b) -> a.projectId != b.projectId
+            ? Long.compare(a.projectId, b.projectId)
+            : Integer.compare(a.runNumber, b.runNumber));
+    for (int runNumber = 0; runNumber < runs.size(); runNumber++) {
+      RunReader reader = new RunReader(runs.get(runNumber), runNumber, bufferSize);
+      readers.add(reader);
+      if (reader.nextBlock()) {
+        heads.add(reader);
+      }
+    }
+    return heads;
+  }
+
+  /** Returns the size of each of a number of buffers sharing the merge share of the budget. */
+  private static int bufferSize(long maxMemory, int buffers) {
+    return (int) Math.max(MIN_BUFFER_SIZE, Math.min(
+        MAX_BUFFER_SIZE, maxMemory / MERGE_BUFFER_SHARE / buffers));
+  }
+
+  /** Reads the project blocks of a run one at a time. */
+  private static class RunReader {
+    private final DataInputStream input;
+    private final int runNumber;
+    private int blocksLeft;
+    private long projectId;
+    private int blockSize;
+
+    RunReader(Path run, int runNumber, int bufferSize) throws IOException {
+      this.input = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(run), bufferSize));
+      this.runNumber = runNumber;
+      this.blocksLeft = input.readInt();
+    }
+
+    /**
+     * Reads the header of the next block.
+     *
+     * @return false at the end of the run.
+     */
+    boolean nextBlock() throws IOException {
+      if (blocksLeft == 0) {
+        return false;
+      }
+      blocksLeft--;
+      projectId = input.readLong();
+      blockSize = input.readInt();
+      return true;
+    }
+
+    void readBlock(ProjectBlock block) throws IOException {
+      block.ensureCapacity(block.size + blockSize);
+      for (int i = 0; i < blockSize; i++) {
+        block.employeeIds[block.size] = input.readLong();
+        block.dayFrom[block.size] = input.readInt();
+        block.dayTo[block.size] = input.readInt();
+        block.size++;
+      }
+    }
+
+    void copyBlock(DataOutputStream output) throws IOException {
+      for (int i = 0; i < blockSize; i++) {
+        output.writeLong(input.readLong());
+        output.writeInt(input.readInt());
+        output.writeInt(input.readInt());
+      }
+    }
+  }
+
+  /** The rows of the project being merged, reused from project to project. */
+  private static class ProjectBlock {
+    private long[] employeeIds = new long[1024];
+    private int[] dayFrom = new int[1024];
+    private int[] dayTo = new int[1024];
+    private int size;
+
+    void clear() {
+      size = 0;
+    }
+
+    void ensureCapacity(int capacity) {
+      if (capacity > employeeIds.length) {
+        int newCapacity = Math.max(capacity, employeeIds.length + (employeeIds.length >> 1));
+        employeeIds = Arrays.copyOf(employeeIds, newCapacity);
+        dayFrom = Arrays.copyOf(dayFrom, newCapacity);
+        dayTo = Arrays.copyOf(dayTo, newCapacity);
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package services;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import org.springframework.stereotype.Service;
+
+import models.Checkpoint;
+import models.ColumnarDataset;
+import models.SolutionResult;
+import utils.LongIntHashMap;
+
+/**
+ * Solves the projects of a CSV file that only grows by appended lines, re-solving only the
+ * projects the new lines touch.
+ *
+ * <p>Each run leaves a Checkpoint next to the file with the offset read up to, all rows read so
+ * far and the result of every project. The next run parses only the lines after that offset,
+ * marks their projects dirty, and reuses the stored result of every other project. Appended rows
+ * come after the stored rows of their project, as they do in the file, so the results are the
+ * same as a full run's. If the file was rewritten instead of appended to, the checkpoint is
+ * dropped and the file is read in full.
+ */
+@Service
+public class IncrementalSolutionsService {
+  private final MappedCsvParser mappedCsvParser = new MappedCsvParser();
+  private final CheckpointStore checkpointStore = new CheckpointStore();
+  private final SolutionsService solutionsService;
+
+  public IncrementalSolutionsService() {
+    this(new SolutionsService());
+  }
+
+  public IncrementalSolutionsService(SolutionsService solutionsService) {
+    this.solutionsService = solutionsService;
+  }
+
+  /**
+   * Sets where the lines that can't be parsed go.
+   *
+   * @param rejectSink The RejectSink.
+   */
+  public void setRejectSink(RejectSink rejectSink) {
+    mappedCsvParser.setRejectSink(rejectSink);
+  }
+
+  /**
+   * Sets the date "NULL" dates stand for. A checkpoint written with another as-of date is
+   * dropped and the file read in full.
+   *
+   * @param asOf The as-of date, or null for the day each parse starts.
+   */
+  public void setAsOf(LocalDate asOf) {
+    mappedCsvParser.setAsOf(asOf);
+  }
+
+  /**
+   * Generate a SolutionResult object of each project of a CSV file, reading and solving only what
+   * changed since the previous run, and update the checkpoint of the file.
+   *
+   * @param  source The CSV file
+   * @param  pool The ForkJoinPool that solves the dirty projects, or null to solve them
+   *         sequentially
+   * @return A List of SolutionResult instances for each project, ordered by project ID
+   * @throws IOException If an I/O error occurs while reading the file or the checkpoint
+   */
+  public List<SolutionResult> getSolutionResults(Path source, ForkJoinPool pool)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      // one as-of day for the whole run, and for the checkpoint it reads and writes
+      DateParser dateParser = mappedCsvParser.newDateParser();
+      long lastLineStart = mappedCsvParser.findLastLineStart(channel);
+      Checkpoint checkpoint = checkpointStore.load(source, channel, dateParser.getAsOfDay());
+      long consumedOffset = checkpoint != null ? checkpoint.getConsumedOffset() : 0;
+      long consumedLines = checkpoint != null ? checkpoint.getConsumedLines() : 0;
+      HashMap<Long, SolutionResult> storedResults =
+          checkpoint != null ? checkpoint.getResults() : new HashMap<>();
+
+      // start from the stored rows and add the complete lines appended since
+      ColumnarDataset.Builder builder = new ColumnarDataset.Builder();
+      if (checkpoint != null) {
+        builder.addAll(checkpoint.getDataset());
+      }
+      LongIntHashMap dirtyProjects = new LongIntHashMap();
+      long appendedLines = mappedCsvParser.parseRange(
+          channel, consumedOffset, lastLineStart, consumedLines + 1, dateParser,
+          (employeeId, projectId, dayFrom, dayTo) -> {
+            builder.add(employeeId, projectId, dayFrom, dayTo);
+            dirtyProjects.put(projectId, 1);
+          });
+      boolean appended = checkpoint == null || lastLineStart > consumedOffset;
+      ColumnarDataset checkpointRows = appended ? builder.build() : checkpoint.getDataset();
+
+      // a last line without a newline may still be being written, so it is used for this run
+      // but left for the next run to read again
+      LongIntHashMap unfinishedProjects = new LongIntHashMap();
+      mappedCsvParser.parseRange(
+          channel, lastLineStart, channel.size(), consumedLines + appendedLines + 1, dateParser,
+          (employeeId, projectId, dayFrom, dayTo) -> {
+            builder.add(employeeId, projectId, dayFrom, dayTo);
+            dirtyProjects.put(projectId, 1);
+            unfinishedProjects.put(projectId, 1);
+          });
+      ColumnarDataset dataset = unfinishedProjects.isEmpty() ? checkpointRows : builder.build();
+
+      // re-solve the dirty projects only
+      IntFunction<SolutionResult> solver = project -> {
+        long projectId = dataset.projectIdAt(project);
+        if (!dirtyProjects.containsKey(projectId) && storedResults.containsKey(projectId)) {
+          return storedResults.get(projectId);
+        }
+        return solutionsService.solveProject(dataset, project);
+      };
+      List<SolutionResult> solutionResultList;
+      if (pool != null) {
+        solutionResultList = new ParallelProjectSolver(solutionsService).solve(
+            dataset.projectCount(), project -> dirtyProjects.containsKey(
+                dataset.projectIdAt(project)) ? dataset.projectSize(project) : 0, solver, pool);
+      } else {
+        solutionResultList = new ArrayList<>();
+        for (int project = 0; project < dataset.projectCount(); project++) {
+          SolutionResult solutionResult = solver.apply(project);
+          if (solutionResult != null) {
+            solutionResultList.add(solutionResult);
+          }
+        }
+      }
+
+      if (appended) {
+        // store the result of every project, except the ones of an unfinished last line
+        HashMap<Long, SolutionResult> results = new HashMap<>(dataset.projectCount() * 4 / 3 + 1);
+        for (int project = 0; project < dataset.projectCount(); project++) {
+          results.put(dataset.projectIdAt(project), null);
+        }
+        for (SolutionResult solutionResult : solutionResultList) {
+          results.put(solutionResult.getProjectId(), solutionResult);
+        }
+        unfinishedProjects.forEach((projectId, ignored) -> results.remove(projectId));
+
+        Checkpoint next = new Checkpoint();
+        next.setAsOfDay(dateParser.getAsOfDay());
+        next.setConsumedOffset(lastLineStart);
+        next.setConsumedLines(consumedLines + appendedLines);
+        next.setDataset(checkpointRows);
+        next.setResults(results);
+        checkpointStore.save(source, channel, next);
+      }
+      return solutionResultList;
+    }
+  }
+}
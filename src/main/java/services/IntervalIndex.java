@@ -0,0 +1,294 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import models.ColumnarDataset;
+import models.SolutionResult;
+import utils.LongIntHashMap;
+
+/**
+ * Indexes the rows of every project of a ColumnarDataset by their day intervals, for ad-hoc
+ * "who overlapped with whom, when" queries on a project of n rows that find k rows in
+ * O(log n + min(n, k log n)) instead of a scan over the whole project.
+ *
+ * <p>A row covers the half-open day range [dayFrom, dayTo), the same rule the overlap days of
+ * SolutionsService follow, so two rows overlap if they share at least one counted day. Each
+ * project's rows are sorted by start day and read as an implicit balanced binary search tree,
+ * the middle of every range being the root of its subtree, and every node keeps the latest end
+ * day of its subtree. A query skips every subtree that ends before the query range starts, and
+ * stops at the first row that starts after it ends. A subtree with a late end day can still
+ * hold many rows that end early, so a query may walk a path of log n nodes per result; a
+ * centered interval tree would bring that to O(log n + k). A second ordering, by employee,
+ * finds the rows of an employee on a project by binary search.
+ */
+public class IntervalIndex {
+  private final ColumnarDataset dataset;
+  // rows of each project by start day, in the project's slice [projectStart, projectEnd)
+  private final int[] rowsByStart;
+  // latest end day of the implicit subtree rooted at each position of rowsByStart
+  private final int[] maxEnd;
+  // dense employee number of each row, and the rows of each project by dense employee number
+  private final LongIntHashMap denseIds = new LongIntHashMap();
+  private final int[] denseEmployee;
+  private final int[] rowsByEmployee;
+
+  /**
+   * Builds the index of every project of a dataset, in O(n log n) for n rows.
+   *
+   * @param dataset All rows, sorted by project
+   */
+  public IntervalIndex(ColumnarDataset dataset) {
+    this.dataset = dataset;
+    int size = dataset.size();
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+    rowsByStart = new int[size];
+    maxEnd = new int[size];
+    denseEmployee = new int[size];
+    rowsByEmployee = new int[size];
+    for (int row = 0; row < size; row++) {
+      denseEmployee[row] = denseIds.putIfAbsent(employeeIds[row], denseIds.size());
+    }
+
+    // sort each project's rows by packing the sort key and the row into one long
+    long[] keys = new long[size];
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      int start = dataset.projectStart(project);
+      int end = dataset.projectEnd(project);
+      for (int row = start; row < end; row++) {
+        keys[row] = ((long) dayFrom[row] << 32) | row;
+      }
+      Arrays.sort(keys, start, end);
+      for (int i = start; i < end; i++) {
+        rowsByStart[i] = (int) keys[i];
+      }
+      buildMaxEnd(dayTo, start, end);
+
+      for (int row = start; row < end; row++) {
+        keys[row] = ((long) denseEmployee[row] << 32) | row;
+      }
+      Arrays.sort(keys, start, end);
+      for (int i = start; i < end; i++) {
+        rowsByEmployee[i] = (int) keys[i];
+      }
+    }
+  }
+
+  /** Returns the indexed dataset. */
+  public ColumnarDataset getDataset() {
+    return dataset;
+  }
+
+  /**
+   * Calls the consumer with every row of a project that overlaps a day range, in order of their
+   * start day.
+   *
+   * @param project  Index of the project in the dataset
+   * @param dayFrom  First epoch day of the range
+   * @param dayTo    Epoch day just past the range
+   * @param consumer Receives the rows
+   */
+  public void forEachOverlappingRow(int project, int dayFrom, int dayTo, IntConsumer consumer) {
+    if (dayFrom < dayTo) {
+      query(dataset.projectStart(project), dataset.projectEnd(project), dayFrom, dayTo,
+            consumer);
+    }
+  }
+
+  /**
+   * Calls the consumer with every row of a project that covers a day, in order of their start
+   * day.
+   *
+   * @param project  Index of the project in the dataset
+   * @param day      The epoch day
+   * @param consumer Receives the rows
+   */
+  public void forEachRowActiveOn(int project, int day, IntConsumer consumer) {
+    forEachOverlappingRow(project, day, day + 1, consumer);
+  }
+
+  /**
+   * Calls the consumer with every row of an employee on a project, in file order.
+   *
+   * @param project    Index of the project in the dataset
+   * @param employeeId Unique identifier of employee
+   * @param consumer   Receives the rows
+   */
+  public void forEachRowOfEmployee(int project, long employeeId, IntConsumer consumer) {
+    int dense = denseIds.get(employeeId, -1);
+    if (dense < 0) {
+      return;
+    }
+    // binary search for the first row of the employee
+    int low = dataset.projectStart(project);
+    int high = dataset.projectEnd(project);
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (denseEmployee[rowsByEmployee[mid]] < dense) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int end = dataset.projectEnd(project);
+    for (int i = low; i < end && denseEmployee[rowsByEmployee[i]] == dense; i++) {
+      consumer.accept(rowsByEmployee[i]);
+    }
+  }
+
+  /**
+   * Finds everyone who overlapped with an employee on a project within a day range. The days
+   * of every pair of rows are counted within the range and added up per colleague.
+   *
+   * @param  employeeId Unique identifier of employee
+   * @param  projectId ID of the project
+   * @param  dayFrom First epoch day of the range
+   * @param  dayTo Epoch day just past the range
+   * @return A SolutionResult per colleague, lower employee ID as employeeOneId, with the most
+   *         days together first, then by the other employee's ID; empty if the project is
+   *         unknown or nobody overlapped with the employee
+   */
+  public List<SolutionResult> findOverlapsWithEmployee(long employeeId, long projectId,
+                                                       int dayFrom, int dayTo) {
+    int project = dataset.indexOfProject(projectId);
+    if (project < 0) {
+      return new ArrayList<>();
+    }
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] fromDay = dataset.fromDayColumn();
+    int[] toDay = dataset.toDayColumn();
+    Map<Long, Integer> days = new HashMap<>();
+    forEachRowOfEmployee(project, employeeId, row -> {
+      // the part of the employee's row within the range
+      int windowFrom = Math.max(fromDay[row], dayFrom);
+      int windowTo = Math.min(toDay[row], dayTo);
+      forEachOverlappingRow(project, windowFrom, windowTo, other -> {
+        if (employeeIds[other] != employeeId) {
+          int overlap = Math.min(toDay[other], windowTo) - Math.max(fromDay[other], windowFrom);
+          days.merge(employeeIds[other], overlap, Integer::sum);
+        }
+      });
+    });
+
+    List<SolutionResult> solutionResultList = new ArrayList<>(days.size());
+    for (Map.Entry<Long, Integer> entry : days.entrySet()) {
+      solutionResultList.add(toSolutionResult(projectId, employeeId, entry.getKey(),
+                                              entry.getValue()));
+    }
+    solutionResultList.sort(
+        Comparator.comparingInt(SolutionResult::getDaysWorkedTogether).reversed()
+                  .thenComparingLong(result -> result.getEmployeeOneId() == employeeId
+                      ? result.getEmployeeTwoId() : result.getEmployeeOneId()));
+    return solutionResultList;
+  }
+
+  /**
+   * Finds every pair of rows of different employees that both cover a day, over all projects.
+   * As in TopPairsService, an employee with several rows covering the day is paired once per
+   * row. Every project is queried, so this takes O(P log n) for P projects on top of the rows
+   * and pairs found.
+   *
+   * @param  day The epoch day
+   * @return A SolutionResult per pair of rows, lower employee ID as employeeOneId, with the days
+   *         the two rows overlap in total; ordered by project ID, then by the start day of the
+   *         rows
+   */
+  public List<SolutionResult> findPairsActiveOn(int day) {
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] fromDay = dataset.fromDayColumn();
+    int[] toDay = dataset.toDayColumn();
+    List<SolutionResult> solutionResultList = new ArrayList<>();
+    RowBuffer active = new RowBuffer();
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      active.size = 0;
+      forEachRowActiveOn(project, day, active);
+
+      long projectId = dataset.projectIdAt(project);
+      for (int i = 0; i < active.size; i++) {
+        int first = active.rows[i];
+        for (int j = i + 1; j < active.size; j++) {
+          int second = active.rows[j];
+          if (employeeIds[first] != employeeIds[second]) {
+            solutionResultList.add(toSolutionResult(
+                projectId, employeeIds[first], employeeIds[second],
+                Math.min(toDay[first], toDay[second]) - Math.max(fromDay[first], fromDay[second])));
+          }
+        }
+      }
+    }
+    return solutionResultList;
+  }
+
+  /**
+   * Fills maxEnd for the implicit subtree of the positions [start, end) of rowsByStart.
+   *
+   * @return The latest end day of the subtree, Integer.MIN_VALUE if it is empty.
+   */
+  private int buildMaxEnd(int[] dayTo, int start, int end) {
+    if (start >= end) {
+      return Integer.MIN_VALUE;
+    }
+    int mid = (start + end) >>> 1;
+    int max = Math.max(dayTo[rowsByStart[mid]],
+                       Math.max(buildMaxEnd(dayTo, start, mid), buildMaxEnd(dayTo, mid + 1, end)));
+    maxEnd[mid] = max;
+    return max;
+  }
+
+  /**
+   * Calls the consumer with every row of the implicit subtree of the positions [start, end)
+   * that overlaps [dayFrom, dayTo), in order of their start day.
+   */
+  private void query(int start, int end, int dayFrom, int dayTo, IntConsumer consumer) {
+    int[] fromDay = dataset.fromDayColumn();
+    int[] toDay = dataset.toDayColumn();
+    while (start < end) {
+      int mid = (start + end) >>> 1;
+      if (maxEnd[mid] <= dayFrom) {
+        // every row of the subtree ends before the range starts
+        return;
+      }
+      query(start, mid, dayFrom, dayTo, consumer);
+      int row = rowsByStart[mid];
+      if (fromDay[row] >= dayTo) {
+        // this row and the whole right subtree start after the range ends
+        return;
+      }
+      if (toDay[row] > dayFrom) {
+        consumer.accept(row);
+      }
+      start = mid + 1;
+    }
+  }
+
+  /** Collects rows into a reusable array. */
+  private static class RowBuffer implements IntConsumer {
+    private int[] rows = new int[16];
+    private int size;
+
+    @Override
+    public void accept(int row) {
+      if (size == rows.length) {
+        rows = Arrays.copyOf(rows, size * 2);
+      }
+      rows[size++] = row;
+    }
+  }
+
+  private static SolutionResult toSolutionResult(long projectId, long employeeId,
+                                                 long otherEmployeeId, int days) {
+    SolutionResult solutionResult = new SolutionResult();
+    solutionResult.setProjectId(projectId);
+    solutionResult.setEmployeeOneId(Math.min(employeeId, otherEmployeeId));
+    solutionResult.setEmployeeTwoId(Math.max(employeeId, otherEmployeeId));
+    solutionResult.setDaysWorkedTogether(days);
+    return solutionResult;
+  }
+}
@@ -0,0 +1,35 @@
+package services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import models.SolutionResult;
+
+/**
+ * Writes SolutionResults as JSON Lines: one object per line, with the field names of
+ * SolutionResult, as the server mode answers.
+ */
+public class JsonLinesResultWriter extends ResultWriter {
+  private static final byte[] PROJECT_ID = ascii("{\"projectId\":");
+  private static final byte[] EMPLOYEE_ONE = ascii(",\"employeeOneId\":");
+  private static final byte[] EMPLOYEE_TWO = ascii(",\"employeeTwoId\":");
+  private static final byte[] DAYS = ascii(",\"daysWorkedTogether\":");
+  private static final byte[] END = ascii("}\n");
+
+  public JsonLinesResultWriter(OutputStream out) {
+    super(out);
+  }
+
+  @Override
+  protected void format(SolutionResult solutionResult) throws IOException {
+    writeBytes(PROJECT_ID);
+    writeDecimal(solutionResult.getProjectId());
+    writeBytes(EMPLOYEE_ONE);
+    writeDecimal(solutionResult.getEmployeeOneId());
+    writeBytes(EMPLOYEE_TWO);
+    writeDecimal(solutionResult.getEmployeeTwoId());
+    writeBytes(DAYS);
+    writeDecimal(solutionResult.getDaysWorkedTogether());
+    writeBytes(END);
+  }
+}
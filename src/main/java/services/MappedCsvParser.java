@@ -0,0 +1,829 @@
+package services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.springframework.stereotype.Service;
+
+import models.ColumnarDataset;
+import models.EmployeeWithProject;
+
+/**
+ * Parses CSV files in the CsvReader format straight from a memory-mapped FileChannel.
+ *
+ * <p>Lines are found and split by scanning bytes, ids and dates are parsed in place and the
+ * whitespace after each comma is skipped by hand, so no String is created for a field unless the
+ * line is rejected. Dates are read by DateParser, so "NULL" dates mean the as-of date, or the
+ * day the parse starts if none is set, and lines with a bad id, a bad date or fewer than four
+ * fields are handed to the RejectSink with their line number.
+ */
+@Service
+public class MappedCsvParser {
+  // Files are mapped in windows of at most this many bytes
+  private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+  // Parallel parsing splits a file into about this many ranges per thread
+  private static final int CHUNKS_PER_THREAD = 4;
+  // Ranges of parallel parsing are at least this many bytes
+  private static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024;
+  // Bytes read at a time while looking for the newline that ends a range
+  private static final int PROBE_SIZE = 64 * 1024;
+  // Bytes read from a stream at a time
+  private static final int READ_SIZE = 1024 * 1024;
+  public static final String GZIP_SUFFIX = ".gz";
+  private static final int FIELD_COUNT = 4;
+  private static final byte SEPARATOR = ',';
+
+  private RejectSink rejectSink = new ConsoleRejectSink();
+  // Date "NULL" dates stand for, null for the day each parse starts
+  private LocalDate asOf;
+
+  public RejectSink getRejectSink() {
+    return rejectSink;
+  }
+
+  public void setRejectSink(RejectSink rejectSink) {
+    this.rejectSink = rejectSink;
+  }
+
+  public LocalDate getAsOf() {
+    return asOf;
+  }
+
+  /**
+   * Sets the date "NULL" dates stand for.
+   *
+   * @param asOf The as-of date, or null for the day each parse starts.
+   */
+  public void setAsOf(LocalDate asOf) {
+    this.asOf = asOf;
+  }
+
+  /**
+   * Creates the DateParser of one parse, resolving the as-of day once for all its lines.
+   *
+   * @return The DateParser.
+   */
+  public DateParser newDateParser() {
+    return new DateParser(asOf);
+  }
+
+  /**
+   * Reads a CSV file located at the specified path and converts its content into a list of
+   * EmployeeWithProject objects.
+   *
+   * @param path The path to the CSV file.
+   * @return A list of EmployeeWithProject objects representing the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public List<EmployeeWithProject> parse(Path path) throws IOException {
+    List<EmployeeWithProject> employeeWithProjectList = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      parseRange(channel, 0, channel.size(), listSink(employeeWithProjectList));
+    }
+    return employeeWithProjectList;
+  }
+
+  /**
+   * Reads a CSV file located at the specified path straight into a ColumnarDataset, without
+   * creating an object per row.
+   *
+   * @param path The path to the CSV file.
+   * @return A ColumnarDataset holding the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public ColumnarDataset parseColumnar(Path path) throws IOException {
+    return parseColumnar(path, newDateParser());
+  }
+
+  /**
+   * Reads a CSV file straight into a ColumnarDataset, resolving "NULL" dates with a given
+   * DateParser.
+   *
+   * @param path       The path to the CSV file.
+   * @param dateParser The DateParser of the run.
+   * @return A ColumnarDataset holding the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public ColumnarDataset parseColumnar(Path path, DateParser dateParser) throws IOException {
+    ColumnarDataset.Builder builder = new ColumnarDataset.Builder();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      parseRange(channel, 0, channel.size(),
+                 new LineParser(builder::add, rejectSink, dateParser, 1));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Reads a CSV file in parallel. The file is split into byte ranges aligned to newlines, each
+   * range is parsed on its own worker of the pool and the partial lists are merged in file
+   * order, so the result is the same list as {@link #parse(Path)} returns.
+   *
+   * @param path The path to the CSV file.
+   * @param pool The ForkJoinPool that parses the ranges.
+   * @return A list of EmployeeWithProject objects representing the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public List<EmployeeWithProject> parseParallel(Path path, ForkJoinPool pool)
+      throws IOException {
+    List<List<EmployeeWithProject>> partials = parseRangesParallel(
+        path, pool, newDateParser(), ArrayList::new, MappedCsvParser::listSink);
+
+    // merge the partial lists in file order
+    int rowCount = 0;
+    for (List<EmployeeWithProject> partial : partials) {
+      rowCount += partial.size();
+    }
+    List<EmployeeWithProject> employeeWithProjectList = new ArrayList<>(rowCount);
+    for (List<EmployeeWithProject> partial : partials) {
+      employeeWithProjectList.addAll(partial);
+    }
+    return employeeWithProjectList;
+  }
+
+  /**
+   * Reads a CSV file in parallel straight into a ColumnarDataset. Every newline aligned range is
+   * parsed into its own builder and the builders are merged in file order.
+   *
+   * @param path The path to the CSV file.
+   * @param pool The ForkJoinPool that parses the ranges.
+   * @return A ColumnarDataset holding the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public ColumnarDataset parseColumnarParallel(Path path, ForkJoinPool pool) throws IOException {
+    return parseColumnarParallel(path, pool, newDateParser());
+  }
+
+  /**
+   * Reads a CSV file in parallel straight into a ColumnarDataset, resolving "NULL" dates with a
+   * given DateParser.
+   *
+   * @param path       The path to the CSV file.
+   * @param pool       The ForkJoinPool that parses the ranges.
+   * @param dateParser The DateParser of the run.
+   * @return A ColumnarDataset holding the data read from the CSV file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public ColumnarDataset parseColumnarParallel(Path path, ForkJoinPool pool,
+                                               DateParser dateParser) throws IOException {
+    List<ColumnarDataset.Builder> partials = parseRangesParallel(
+        path, pool, dateParser, ColumnarDataset.Builder::new, builder -> builder::add);
+
+    int rowCount = 0;
+    for (ColumnarDataset.Builder partial : partials) {
+      rowCount += partial.size();
+    }
+    ColumnarDataset.Builder builder = new ColumnarDataset.Builder(rowCount);
+    for (ColumnarDataset.Builder partial : partials) {
+      builder.addAll(partial);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Reads several CSV files into one ColumnarDataset, so the rows of a project are grouped
+   * together even if they are spread over the files. Within a project, rows keep the order of
+   * the files, then their order within each file. Files ending in ".gz" are decompressed while
+   * they are parsed, without a decompressed copy on disk.
+   *
+   * <p>With a pool, the files are parsed on its workers at the same time, and a single plain
+   * file is split into ranges as in {@link #parseColumnarParallel}. Ignored lines are handed to
+   * the RejectSink in file order, with their file if there are several, numbered within it.
+   *
+   * @param paths The paths to the CSV files.
+   * @param pool  The ForkJoinPool that parses the files, or null to parse them one by one.
+   * @return A ColumnarDataset holding the data read from all files.
+   * @throws IOException If an I/O error occurs while reading a file.
+   */
+  public ColumnarDataset parseColumnarFiles(List<Path> paths, ForkJoinPool pool)
+      throws IOException {
+    if (paths.size() == 1 && !isGzip(paths.get(0))) {
+      return pool != null
+          ? parseColumnarParallel(paths.get(0), pool) : parseColumnar(paths.get(0));
+    }
+
+    DateParser dateParser = newDateParser();
+    List<ColumnarDataset.Builder> partials = new ArrayList<>(paths.size());
+    if (pool == null) {
+      for (Path path : paths) {
+        ColumnarDataset.Builder partial = new ColumnarDataset.Builder();
+        parseFile(path, new LineParser(partial::add, rejectSink, dateParser,
+                                       sourceOf(path, paths), 1));
+        partials.add(partial);
+      }
+    } else {
+      // parse every file on its own worker
+      List<ForkJoinTask<ParsedRange<ColumnarDataset.Builder>>> tasks = new ArrayList<>();
+      for (Path path : paths) {
+        tasks.add(pool.submit(() -> {
+          ParsedRange<ColumnarDataset.Builder> parsedFile =
+              new ParsedRange<>(new ColumnarDataset.Builder());
+          parsedFile.lineCount = parseFile(path, new LineParser(
+              parsedFile.partial::add, parsedFile.rejects, dateParser, sourceOf(path, paths), 1));
+          return parsedFile;
+        }));
+      }
+      for (ForkJoinTask<ParsedRange<ColumnarDataset.Builder>> task : tasks) {
+        ParsedRange<ColumnarDataset.Builder> parsedFile = joinRange(task);
+        parsedFile.rejects.replayTo(rejectSink, 0);
+        partials.add(parsedFile.partial);
+      }
+    }
+
+    // merge in file order, then group by project
+    int rowCount = 0;
+    for (ColumnarDataset.Builder partial : partials) {
+      rowCount += partial.size();
+    }
+    ColumnarDataset.Builder builder = new ColumnarDataset.Builder(rowCount);
+    for (ColumnarDataset.Builder partial : partials) {
+      builder.addAll(partial);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Parses a CSV stream to its end, such as standard input, a pipe or a decompressing stream,
+   * reading it in chunks and keeping only the start of an unfinished line between reads.
+   *
+   * @param inputStream The CSV data, read to its end but not closed.
+   * @param sink        Receives the parsed rows, in order.
+   * @return The number of lines in the stream.
+   * @throws IOException If an I/O error occurs while reading the stream.
+   */
+  public long parseStream(InputStream inputStream, RowSink sink) throws IOException {
+    return parseStream(inputStream, new LineParser(sink, rejectSink, newDateParser(), 1));
+  }
+
+  /**
+   * Parses a whole CSV file in one pass, mapping it into memory, or decompressing it if it is
+   * gzip-compressed.
+   *
+   * @param path The path to the CSV file.
+   * @param sink Receives the parsed rows, in file order.
+   * @return The number of lines in the file.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public long parseFile(Path path, RowSink sink) throws IOException {
+    return parseFile(path, new LineParser(sink, rejectSink, newDateParser(), 1));
+  }
+
+  /**
+   * Parses several CSV files one after the other into one sink. Ignored lines are handed to the
+   * RejectSink with their file if there are several.
+   *
+   * @param paths The paths to the CSV files.
+   * @param sink  Receives the parsed rows, in the order of the files and of the lines within them.
+   * @throws IOException If an I/O error occurs while reading a file.
+   */
+  public void parseFiles(List<Path> paths, RowSink sink) throws IOException {
+    DateParser dateParser = newDateParser();
+    for (Path path : paths) {
+      parseFile(path, new LineParser(sink, rejectSink, dateParser, sourceOf(path, paths), 1));
+    }
+  }
+
+  /** Returns the file to report with the ignored lines of one of the paths, null if it's alone. */
+  private static Path sourceOf(Path path, List<Path> paths) {
+    return paths.size() > 1 ? path : null;
+  }
+
+  /**
+   * Returns whether a file is gzip-compressed, judged by its ".gz" suffix.
+   *
+   * @param path The file.
+   * @return Whether the file name ends with ".gz".
+   */
+  public static boolean isGzip(Path path) {
+    return path.getFileName().toString().endsWith(GZIP_SUFFIX);
+  }
+
+  private long parseFile(Path path, LineParser lineParser) throws IOException {
+    if (isGzip(path)) {
+      try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(path), 64 * 1024)) {
+        return parseStream(inputStream, lineParser);
+      }
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return parseRange(channel, 0, channel.size(), lineParser);
+    }
+  }
+
+  private long parseStream(InputStream inputStream, LineParser lineParser) throws IOException {
+    long firstLineNumber = lineParser.lineNumber;
+    byte[] buffer = new byte[READ_SIZE];
+    int filled = 0;
+    boolean endOfData = false;
+    while (!endOfData) {
+      if (filled == buffer.length) {
+        // a single line fills the whole buffer
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      int read = inputStream.read(buffer, filled, buffer.length - filled);
+      if (read < 0) {
+        endOfData = true;
+      } else {
+        filled += read;
+      }
+
+      // parse the complete lines and keep the start of an unfinished one for the next read
+      int consumed = lineParser.parseLines(ByteBuffer.wrap(buffer), filled, endOfData);
+      System.arraycopy(buffer, consumed, buffer, 0, filled - consumed);
+      filled -= consumed;
+    }
+    return lineParser.lineNumber - firstLineNumber;
+  }
+
+  /**
+   * Splits a file into newline aligned byte ranges and parses each range on a worker of the pool
+   * into its own partial result. The ignored lines of each range are buffered, since their line
+   * numbers are only known once the lines of the ranges before it are counted, and handed to the
+   * RejectSink in file order afterwards.
+   *
+   * @param path           The path to the CSV file.
+   * @param pool           The ForkJoinPool that parses the ranges.
+   * @param dateParser     The DateParser of the run, shared by the ranges.
+   * @param partialFactory Creates the partial result of a range.
+   * @param sinkOf         Returns the RowSink that adds rows to a partial result.
+   * @return The partial results, in file order.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  private <T> List<T> parseRangesParallel(Path path, ForkJoinPool pool, DateParser dateParser,
+                                          Supplier<T> partialFactory,
+                                          Function<T, RowSink> sinkOf) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long[] boundaries = splitAtNewlines(channel, pool.getParallelism() * CHUNKS_PER_THREAD);
+
+      // parse every range on its own worker, numbering its lines from 1
+      List<ForkJoinTask<ParsedRange<T>>> tasks = new ArrayList<>();
+      for (int i = 0; i < boundaries.length - 1; i++) {
+        long start = boundaries[i];
+        long end = boundaries[i + 1];
+        tasks.add(pool.submit(() -> {
+          ParsedRange<T> parsedRange = new ParsedRange<>(partialFactory.get());
+          LineParser lineParser = new LineParser(sinkOf.apply(parsedRange.partial),
+                                                 parsedRange.rejects, dateParser, 1);
+          parsedRange.lineCount = parseRange(channel, start, end, lineParser);
+          return parsedRange;
+        }));
+      }
+
+      // hand over the ignored lines with their line numbers in the file
+      List<T> partials = new ArrayList<>(tasks.size());
+      long linesBefore = 0;
+      for (ForkJoinTask<ParsedRange<T>> task : tasks) {
+        ParsedRange<T> parsedRange = joinRange(task);
+        parsedRange.rejects.replayTo(rejectSink, linesBefore);
+        linesBefore += parsedRange.lineCount;
+        partials.add(parsedRange.partial);
+      }
+      return partials;
+    }
+  }
+
+  /**
+   * Splits a file into about the given number of byte ranges, moving every split point just past
+   * the next newline so each range holds whole lines. Ranges are never smaller than
+   * MIN_CHUNK_SIZE bytes.
+   *
+   * @param channel The open file.
+   * @param chunks  The wanted number of ranges.
+   * @return The range boundaries: range i is [boundaries[i], boundaries[i + 1]).
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public long[] splitAtNewlines(FileChannel channel, int chunks) throws IOException {
+    long size = channel.size();
+    long chunkSize = Math.max(MIN_CHUNK_SIZE, size / Math.max(chunks, 1) + 1);
+    List<Long> boundaries = new ArrayList<>();
+    boundaries.add(0L);
+    ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+    long position = chunkSize;
+    while (position < size) {
+      long lineEnd = findNextLineStart(channel, position, probe);
+      if (lineEnd >= size) {
+        break;
+      }
+      boundaries.add(lineEnd);
+      position = lineEnd + chunkSize;
+    }
+    boundaries.add(size);
+    return boundaries.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Finds the offset just past the first newline at or after a position.
+   *
+   * @return The offset of the next line start, or the file size if there is no further newline.
+   */
+  private long findNextLineStart(FileChannel channel, long position, ByteBuffer probe)
+      throws IOException {
+    long size = channel.size();
+    while (position < size) {
+      probe.clear();
+      int read = channel.read(probe, position);
+      if (read <= 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  /**
+   * Finds the offset just past the last newline of a file, i.e. the end of its last complete
+   * line. Bytes after it belong to a line that may still be being written.
+   *
+   * @param channel The open file.
+   * @return The offset just past the last newline, or 0 if the file has no newline.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public long findLastLineStart(FileChannel channel) throws IOException {
+    ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+    long end = channel.size();
+    while (end > 0) {
+      long position = Math.max(0, end - PROBE_SIZE);
+      probe.clear().limit((int) (end - position));
+      while (probe.hasRemaining() && channel.read(probe, position + probe.position()) > 0) {
+        // keep reading until the probe is full
+      }
+      for (int i = probe.position() - 1; i >= 0; i--) {
+        if (probe.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      end = position;
+    }
+    return 0;
+  }
+
+  private static <T> T joinRange(ForkJoinTask<T> task) throws IOException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while parsing", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Parsing failed", e.getCause());
+    }
+  }
+
+  /**
+   * Parses the lines of a byte range of a file. The range must start at the beginning of a line
+   * and end at the beginning of a line or at the end of the file. Lines are numbered from 1 at
+   * the start of the range.
+   *
+   * @param channel The open file.
+   * @param start   Offset of the first byte of the range.
+   * @param end     Offset just past the last byte of the range.
+   * @param sink    Receives the parsed rows, in file order.
+   * @return The number of lines in the range.
+   * @throws IOException If an I/O error occurs while mapping the file.
+   */
+  public long parseRange(FileChannel channel, long start, long end, RowSink sink)
+      throws IOException {
+    return parseRange(channel, start, end, 1, sink);
+  }
+
+  /**
+   * Parses the lines of a byte range of a file, numbering them from a given line number.
+   *
+   * @param channel         The open file.
+   * @param start           Offset of the first byte of the range.
+   * @param end             Offset just past the last byte of the range.
+   * @param firstLineNumber Line number of the first line of the range.
+   * @param sink            Receives the parsed rows, in file order.
+   * @return The number of lines in the range.
+   * @throws IOException If an I/O error occurs while mapping the file.
+   */
+  public long parseRange(FileChannel channel, long start, long end, long firstLineNumber,
+                         RowSink sink) throws IOException {
+    return parseRange(channel, start, end, firstLineNumber, newDateParser(), sink);
+  }
+
+  /**
+   * Parses the lines of a byte range of a file, numbering them from a given line number and
+   * resolving "NULL" dates with a given DateParser, so several ranges of a run share its day.
+   *
+   * @param channel         The open file.
+   * @param start           Offset of the first byte of the range.
+   * @param end             Offset just past the last byte of the range.
+   * @param firstLineNumber Line number of the first line of the range.
+   * @param dateParser      The DateParser of the run.
+   * @param sink            Receives the parsed rows, in file order.
+   * @return The number of lines in the range.
+   * @throws IOException If an I/O error occurs while mapping the file.
+   */
+  public long parseRange(FileChannel channel, long start, long end, long firstLineNumber,
+                         DateParser dateParser, RowSink sink) throws IOException {
+    return parseRange(channel, start, end,
+                      new LineParser(sink, rejectSink, dateParser, firstLineNumber));
+  }
+
+  private long parseRange(FileChannel channel, long start, long end, LineParser lineParser)
+      throws IOException {
+    long firstLineNumber = lineParser.lineNumber;
+    long position = start;
+    while (position < end) {
+      int length = (int) Math.min(end - position, WINDOW_SIZE);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      boolean lastWindow = position + length == end;
+      int consumed = lineParser.parseLines(buffer, length, lastWindow);
+      if (consumed == 0) {
+        throw new IOException("Line at offset " + position + " is longer than "
+                                  + WINDOW_SIZE + " bytes");
+      }
+      position += consumed;
+    }
+    return lineParser.lineNumber - firstLineNumber;
+  }
+
+  /**
+   * Parses the complete lines of a buffer, numbering them from 1.
+   *
+   * @param buffer    Buffer holding the bytes to parse, starting at index 0.
+   * @param limit     Number of bytes in the buffer.
+   * @param endOfData Whether the data ends with the buffer, so a last line without a newline is
+   *                  complete.
+   * @param sink      Receives the parsed rows, in order.
+   * @return The number of bytes consumed, i.e. the index after the last complete line.
+   */
+  public int parseLines(ByteBuffer buffer, int limit, boolean endOfData, RowSink sink) {
+    return lineParser(sink, 1).parseLines(buffer, limit, endOfData);
+  }
+
+  /**
+   * Creates a LineParser for data that arrives in several buffers, which keeps counting lines
+   * from one buffer to the next.
+   *
+   * @param sink            Receives the parsed rows, in order.
+   * @param firstLineNumber Line number of the first line.
+   * @return The LineParser.
+   */
+  LineParser lineParser(RowSink sink, long firstLineNumber) {
+    return new LineParser(sink, rejectSink, newDateParser(), firstLineNumber);
+  }
+
+  /**
+   * Returns a RowSink that adds each row to a list as an EmployeeWithProject.
+   *
+   * @param result The list the rows are added to.
+   * @return The RowSink.
+   */
+  public static RowSink listSink(List<EmployeeWithProject> result) {
+    return (employeeId, projectId, dayFrom, dayTo) -> {
+      EmployeeWithProject employeeWithProject = new EmployeeWithProject();
+      employeeWithProject.setEmployeeId(employeeId);
+      employeeWithProject.setProjectId(projectId);
+      employeeWithProject.setDateFrom(LocalDate.ofEpochDay(dayFrom));
+      employeeWithProject.setDateTo(LocalDate.ofEpochDay(dayTo));
+      result.add(employeeWithProject);
+    };
+  }
+
+  /** Parsing state for one caller, so a single MappedCsvParser can be shared by threads. */
+  class LineParser {
+    private final RowSink sink;
+    private final RejectSink rejectSink;
+    private final DateParser dateParser;
+    // file of the lines, handed to the RejectSink; null for a single input
+    private final Path source;
+    // number of the next line
+    private long lineNumber;
+    // start and end index of each field of the current line
+    private final int[] fieldStart = new int[FIELD_COUNT];
+    private final int[] fieldEnd = new int[FIELD_COUNT];
+    // parsed employee and project id of the current line
+    private final long[] ids = new long[2];
+
+    LineParser(RowSink sink, RejectSink rejectSink, DateParser dateParser, long firstLineNumber) {
+      this(sink, rejectSink, dateParser, null, firstLineNumber);
+    }
+
+    LineParser(RowSink sink, RejectSink rejectSink, DateParser dateParser, Path source,
+               long firstLineNumber) {
+      this.sink = sink;
+      this.rejectSink = rejectSink;
+      this.dateParser = dateParser;
+      this.source = source;
+      this.lineNumber = firstLineNumber;
+    }
+
+    /**
+     * Parses the complete lines of a buffer.
+     *
+     * @return The number of bytes consumed, i.e. the index after the last complete line.
+     */
+    int parseLines(ByteBuffer buffer, int limit, boolean endOfData) {
+      int lineStart = 0;
+      for (int i = 0; i < limit; i++) {
+        if (buffer.get(i) == '\n') {
+          parseLine(buffer, lineStart, i);
+          lineStart = i + 1;
+        }
+      }
+      if (endOfData && lineStart < limit) {
+        parseLine(buffer, lineStart, limit);
+        lineStart = limit;
+      }
+      return lineStart;
+    }
+
+    private void parseLine(ByteBuffer buffer, int from, int to) {
+      lineNumber++;
+      if (to > from && buffer.get(to - 1) == '\r') {
+        to--;
+      }
+      if (to == from) {
+        // skip blank lines
+        return;
+      }
+
+      int fieldCount = splitLine(buffer, from, to);
+      if (fieldCount < FIELD_COUNT) {
+        reject(RejectReason.WRONG_COLUMN_COUNT, buffer, from, to);
+        return;
+      }
+
+      // check if UserId and projectId can be parsed to a Long
+      if (!parseLong(buffer, fieldStart[0], fieldEnd[0], 0)
+          || !parseLong(buffer, fieldStart[1], fieldEnd[1], 1)) {
+        reject(RejectReason.BAD_ID, buffer, from, to);
+        return;
+      }
+
+      // parse DateFrom and DateTo in place to epoch days
+      int dayFrom = dateParser.parseEpochDay(buffer, fieldStart[2], fieldEnd[2]);
+      int dayTo = dayFrom != DateParser.INVALID
+          ? dateParser.parseEpochDay(buffer, fieldStart[3], fieldEnd[3]) : DateParser.INVALID;
+      if (dayTo == DateParser.INVALID) {
+        reject(RejectReason.BAD_DATE, buffer, from, to);
+        return;
+      }
+
+      sink.accept(ids[0], ids[1], dayFrom, dayTo);
+    }
+
+    /**
+     * Finds the first four fields of a line, skipping whitespace after each comma.
+     *
+     * @return The number of fields, not counting empty fields at the end of the line.
+     */
+    private int splitLine(ByteBuffer buffer, int from, int to) {
+      int field = 0;
+      int lastNonEmptyField = -1;
+      int start = from;
+      int i = from;
+      while (true) {
+        if (i == to || buffer.get(i) == SEPARATOR) {
+          if (field < FIELD_COUNT) {
+            fieldStart[field] = start;
+            fieldEnd[field] = i;
+          }
+          if (i > start) {
+            lastNonEmptyField = field;
+          }
+          if (i == to) {
+            break;
+          }
+          field++;
+          i++;
+          while (i < to && isWhitespace(buffer.get(i))) {
+            i++;
+          }
+          start = i;
+        } else {
+          i++;
+        }
+      }
+      return lastNonEmptyField + 1;
+    }
+
+    /**
+     * Parses a field to a long with the same rules as Long.parseLong, storing it in ids[slot].
+     *
+     * @return true if the field is a valid long, false if not
+     */
+    private boolean parseLong(ByteBuffer buffer, int from, int to, int slot) {
+      if (from == to) {
+        return false;
+      }
+      boolean negative = false;
+      int i = from;
+      byte first = buffer.get(i);
+      if (first == '-' || first == '+') {
+        negative = first == '-';
+        i++;
+        if (i == to) {
+          return false;
+        }
+      }
+      // accumulate negatively like Long.parseLong, so Long.MIN_VALUE does not overflow
+      long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+      long multiplyMin = limit / 10;
+      long value = 0;
+      for (; i < to; i++) {
+        int digit = buffer.get(i) - '0';
+        if (digit < 0 || digit > 9 || value < multiplyMin) {
+          return false;
+        }
+        value *= 10;
+        if (value < limit + digit) {
+          return false;
+        }
+        value -= digit;
+      }
+      ids[slot] = negative ? value : -value;
+      return true;
+    }
+
+    private void reject(RejectReason reason, ByteBuffer buffer, int from, int to) {
+      // lineNumber already counts the rejected line
+      if (source == null) {
+        rejectSink.reject(reason, lineNumber - 1, decode(buffer, from, to));
+      } else {
+        rejectSink.reject(reason, source, lineNumber - 1, decode(buffer, from, to));
+      }
+    }
+  }
+
+  /**
+   * The partial result of a range, or a file, of parallel parsing, with its line count and
+   * rejects.
+   */
+  private static class ParsedRange<T> {
+    private final T partial;
+    private final BufferedRejectSink rejects = new BufferedRejectSink();
+    private long lineCount;
+
+    ParsedRange(T partial) {
+      this.partial = partial;
+    }
+  }
+
+  /** Holds the ignored lines of a range until their line numbers in the file are known. */
+  private static class BufferedRejectSink implements RejectSink {
+    private final List<RejectReason> reasons = new ArrayList<>();
+    private final List<Path> sources = new ArrayList<>();
+    private final List<Long> lineNumbers = new ArrayList<>();
+    private final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void reject(RejectReason reason, long lineNumber, String line) {
+      reject(reason, null, lineNumber, line);
+    }
+
+    @Override
+    public void reject(RejectReason reason, Path source, long lineNumber, String line) {
+      reasons.add(reason);
+      sources.add(source);
+      lineNumbers.add(lineNumber);
+      lines.add(line);
+    }
+
+    void replayTo(RejectSink target, long lineOffset) {
+      for (int i = 0; i < reasons.size(); i++) {
+        if (sources.get(i) == null) {
+          target.reject(reasons.get(i), lineNumbers.get(i) + lineOffset, lines.get(i));
+        } else {
+          target.reject(reasons.get(i), sources.get(i), lineNumbers.get(i) + lineOffset,
+                        lines.get(i));
+        }
+      }
+    }
+  }
+
+  private static String decode(ByteBuffer buffer, int from, int to) {
+    byte[] bytes = new byte[to - from];
+    buffer.get(from, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static boolean isWhitespace(byte b) {
+    // same characters as \s in the regex the line based reader used
+    return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+  }
+}
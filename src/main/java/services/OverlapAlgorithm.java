@@ -0,0 +1,42 @@
+package services;
+
+/** The OverlapAlgorithm enum lists the algorithms available for finding the pair of employees
+ * with the longest overlap on a single project:
+ *   BRUTE_FORCE: Reference implementation that compares every pair of employees - O(n^2).
+ *   SWEEP_LINE: Sort-based sweep over (dateFrom, dateTo) with a running furthest end - O(n log n).
+ *   PAIR_SCAN: Sort-based scan that compares only the pairs that overlap - O(n log n + k) for k
+ *     overlapping pairs.
+ *   ADAPTIVE: Brute force for projects below a size cutoff, the sweep line above it.
+ */
+public enum OverlapAlgorithm {
+  BRUTE_FORCE,
+  SWEEP_LINE,
+  PAIR_SCAN,
+  ADAPTIVE;
+
+  /**
+   * Resolves an algorithm from a command line value, ignoring case and dashes.
+   *
+   * @param value The command line value, e.g. "sweep-line" or "brute_force".
+   * @return The matching OverlapAlgorithm.
+   * @throws IllegalArgumentException If the value does not name a known algorithm.
+   */
+  public static OverlapAlgorithm fromOptionValue(String value) {
+    String normalized = value.trim().toUpperCase().replace('-', '_');
+    for (OverlapAlgorithm algorithm : values()) {
+      if (algorithm.name().equals(normalized)) {
+        return algorithm;
+      }
+    }
+    throw new IllegalArgumentException("Unknown overlap algorithm: " + value);
+  }
+
+  /**
+   * Returns the command line value of the algorithm, e.g. "sweep-line".
+   *
+   * @return The lower case name with dashes.
+   */
+  public String toOptionValue() {
+    return name().toLowerCase().replace('_', '-');
+  }
+}
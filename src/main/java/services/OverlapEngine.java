@@ -0,0 +1,32 @@
+package services;
+
+import models.LongestPair;
+
+/**
+ * Finds the pair of employees with the longest overlap on a single project, whose rows are a
+ * slice of primitive columns. Every engine reports the same pair: when several pairs share the
+ * longest overlap, the first pair (i, j) with i &lt; j in row order, as the brute-force nested
+ * loop does.
+ */
+public interface OverlapEngine {
+
+  /**
+   * Returns the algorithm this engine implements.
+   *
+   * @return The OverlapAlgorithm.
+   */
+  OverlapAlgorithm getAlgorithm();
+
+  /**
+   * Identifies the pair of employees that worked together for the longest period of time, for a
+   * project whose rows are the range [start, end) of columnar arrays.
+   *
+   * @param  employeeIds Employee ID of each row
+   * @param  dayFrom     Start epoch day of each row
+   * @param  dayTo       End epoch day of each row
+   * @param  start       First row of the project
+   * @param  end         Row just past the last row of the project
+   * @return A LongestPair instance with the IDs of the two employees and their overlap period
+   */
+  LongestPair findLongestPair(long[] employeeIds, int[] dayFrom, int[] dayTo, int start, int end);
+}
@@ -0,0 +1,87 @@
+package services;
+
+import java.util.Arrays;
+
+/**
+ * Enumerates every pair of rows of a project that overlaps for at least one day, without
+ * comparing every pair.
+ *
+ * <p>Rows are swept in order of their start day while an active set keeps the earlier rows that
+ * are still running. A row that ends before the current one starts can not overlap any later
+ * row either and leaves the set, so the work is O(n log n) plus the number of overlapping pairs.
+ */
+public class OverlappingPairEnumerator {
+
+  /** Receives one overlapping pair of rows. */
+  @FunctionalInterface
+  public interface PairConsumer {
+
+    /**
+     * Accepts an overlapping pair.
+     *
+     * @param firstRow    The row that comes first in file order.
+     * @param secondRow   The row that comes second in file order.
+     * @param overlapDays The days the two rows overlap, at least one.
+     */
+    void accept(int firstRow, int secondRow, int overlapDays);
+  }
+
+  /**
+   * Calls the consumer once for every pair of rows of [start, end) that overlaps for at least
+   * one day.
+   *
+   * @param dayFrom  Start epoch day of each row
+   * @param dayTo    End epoch day of each row
+   * @param start    First row of the project
+   * @param end      Row just past the last row of the project
+   * @param consumer Receives the overlapping pairs
+   */
+  public void forEachOverlappingPair(int[] dayFrom, int[] dayTo, int start, int end,
+                                     PairConsumer consumer) {
+    int size = end - start;
+    if (size < 2) {
+      return;
+    }
+    int[] order = sortByDateFrom(dayFrom, start, end);
+
+    int[] active = new int[size];
+    int activeCount = 0;
+    for (int k = 0; k < size; k++) {
+      int current = order[k];
+      int kept = 0;
+      for (int a = 0; a < activeCount; a++) {
+        int other = active[a];
+        // the other row started earlier, so the overlap ends at the earlier end
+        int overlapDays = Math.min(dayTo[other], dayTo[current]) - dayFrom[current];
+        if (dayTo[other] <= dayFrom[current]) {
+          // ended before the current row started - no later row can overlap it either
+          continue;
+        }
+        active[kept++] = other;
+        if (overlapDays > 0) {
+          consumer.accept(Math.min(other, current), Math.max(other, current), overlapDays);
+        }
+      }
+      activeCount = kept;
+      active[activeCount++] = current;
+    }
+  }
+
+  /**
+   * Sorts the rows of [start, end) by their start day, using the row itself to break ties.
+   */
+  private int[] sortByDateFrom(int[] dayFrom, int start, int end) {
+    // pack (dayFrom, row - start) into one long so a primitive sort orders both
+    long[] keys = new long[end - start];
+    for (int i = start; i < end; i++) {
+      keys[i - start] = ((long) dayFrom[i] << 32) | (i - start);
+    }
+    Arrays.sort(keys);
+
+    int[] order = new int[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      order[i] = start + (int) keys[i];
+    }
+    return order;
+  }
+}
@@ -0,0 +1,130 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+
+import models.CollaborationResult;
+import models.ColumnarDataset;
+import models.SolutionResult;
+import utils.LongIntHashMap;
+
+@Service
+public class PairAggregationService {
+  private final OverlappingPairEnumerator overlappingPairEnumerator =
+      new OverlappingPairEnumerator();
+
+  /**
+   * Finds the pair of employees with the most days worked together, summed over all projects.
+   * Within a project the overlaps of all rows of the two employees are added up, and pairs of
+   * rows of the same employee are ignored. Ties are won by the pair with the lowest
+   * employeeOneId, then the lowest employeeTwoId.
+   *
+   * <p>Employee IDs are dictionary-encoded to dense ints, so a pair packs into a single long
+   * key of a primitive LongIntHashMap holding its total days.
+   *
+   * @param  dataset All rows, sorted by project
+   * @return The CollaborationResult of the winning pair with its per-project breakdown, or
+   *         null if no two employees ever overlapped
+   */
+  public CollaborationResult findLongestCollaboratingPair(ColumnarDataset dataset) {
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+
+    // dictionary-encode employee IDs to dense ints
+    LongIntHashMap denseIds = new LongIntHashMap();
+    int[] denseEmployee = new int[dataset.size()];
+    for (int row = 0; row < dataset.size(); row++) {
+      denseEmployee[row] = denseIds.putIfAbsent(employeeIds[row], denseIds.size());
+    }
+
+    // add up the overlap days of every pair over all projects
+    LongIntHashMap pairDays = new LongIntHashMap();
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      overlappingPairEnumerator.forEachOverlappingPair(
+          dayFrom, dayTo, dataset.projectStart(project), dataset.projectEnd(project),
+          (firstRow, secondRow, overlapDays) -> {
+            int first = denseEmployee[firstRow];
+            int second = denseEmployee[secondRow];
+            if (first != second) {
+              pairDays.addTo(packPair(first, second), overlapDays);
+            }
+          });
+    }
+    if (pairDays.isEmpty()) {
+      return null;
+    }
+
+    // pick the pair with the most days, using the real employee IDs to break ties
+    long[] denseToEmployee = new long[denseIds.size()];
+    denseIds.forEach((employeeId, dense) -> denseToEmployee[dense] = employeeId);
+    long[] best = new long[3];
+    best[2] = -1;
+    pairDays.forEach((pair, days) -> {
+      long one = denseToEmployee[(int) (pair >>> 32)];
+      long two = denseToEmployee[(int) pair];
+      long low = Math.min(one, two);
+      long high = Math.max(one, two);
+      if (days > best[2] || (days == best[2]
+          && (low < best[0] || (low == best[0] && high < best[1])))) {
+        best[0] = low;
+        best[1] = high;
+        best[2] = days;
+      }
+    });
+
+    CollaborationResult collaborationResult = new CollaborationResult();
+    collaborationResult.setEmployeeOneId(best[0]);
+    collaborationResult.setEmployeeTwoId(best[1]);
+    collaborationResult.setTotalDaysWorkedTogether(best[2]);
+    collaborationResult.setProjects(getProjectBreakdown(dataset, best[0], best[1]));
+    return collaborationResult;
+  }
+
+  /**
+   * Collects the days two employees worked together on each project they shared.
+   *
+   * @param  dataset All rows, sorted by project
+   * @param  employeeOneId Unique identifier of employee
+   * @param  employeeTwoId Unique identifier of employee
+   * @return A SolutionResult per project on which the two employees overlapped, by project ID
+   */
+  private List<SolutionResult> getProjectBreakdown(ColumnarDataset dataset, long employeeOneId,
+                                                   long employeeTwoId) {
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+    List<SolutionResult> projects = new ArrayList<>();
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      int days = 0;
+      for (int i = dataset.projectStart(project); i < dataset.projectEnd(project); i++) {
+        if (employeeIds[i] != employeeOneId) {
+          continue;
+        }
+        for (int j = dataset.projectStart(project); j < dataset.projectEnd(project); j++) {
+          if (employeeIds[j] == employeeTwoId) {
+            days += Math.max(0, Math.min(dayTo[i], dayTo[j]) - Math.max(dayFrom[i], dayFrom[j]));
+          }
+        }
+      }
+      if (days > 0) {
+        SolutionResult solutionResult = new SolutionResult();
+        solutionResult.setProjectId(dataset.projectIdAt(project));
+        solutionResult.setEmployeeOneId(employeeOneId);
+        solutionResult.setEmployeeTwoId(employeeTwoId);
+        solutionResult.setDaysWorkedTogether(days);
+        projects.add(solutionResult);
+      }
+    }
+    return projects;
+  }
+
+  /**
+   * Packs two dense employee IDs into one order independent long key.
+   */
+  private static long packPair(int first, int second) {
+    return ((long) Math.min(first, second) << 32) | Math.max(first, second);
+  }
+}
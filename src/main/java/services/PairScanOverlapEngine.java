@@ -0,0 +1,73 @@
+package services;
+
+import java.util.Arrays;
+
+import org.springframework.stereotype.Service;
+
+import models.LongestPair;
+
+/**
+ * Finds the pair of employees with the longest overlap on a project by sorting its rows by
+ * dateFrom and comparing each row only with the rows that start before it ends. That is
+ * O(n log n + k) for k overlapping pairs: fast for projects whose rows are spread over time,
+ * but as slow as brute force for a project where everyone overlaps everyone.
+ */
+@Service
+public class PairScanOverlapEngine implements OverlapEngine {
+
+  @Override
+  public OverlapAlgorithm getAlgorithm() {
+    return OverlapAlgorithm.PAIR_SCAN;
+  }
+
+  @Override
+  public LongestPair findLongestPair(long[] employeeIds, int[] dayFrom, int[] dayTo, int start,
+                                     int end) {
+    LongestPair longestPair = new LongestPair();
+    int size = end - start;
+    if (size < 2) {
+      return longestPair;
+    }
+
+    // sort rows by dateFrom, packing (dayFrom, row - start) into one long
+    long[] keys = new long[size];
+    for (int i = start; i < end; i++) {
+      keys[i - start] = ((long) dayFrom[i] << 32) | (i - start);
+    }
+    Arrays.sort(keys);
+    int[] order = new int[size];
+    for (int k = 0; k < size; k++) {
+      order[k] = start + (int) keys[k];
+    }
+
+    int longestOverlap = 0;
+    int first = -1;
+    int second = -1;
+    for (int a = 0; a < size - 1; a++) {
+      int i = order[a];
+      // the later rows start in order, so stop at the first one that starts after row i ends
+      for (int b = a + 1; b < size && dayFrom[order[b]] < dayTo[i]; b++) {
+        int j = order[b];
+        int overlapDays = Math.min(dayTo[i], dayTo[j]) - dayFrom[j];
+        int low = Math.min(i, j);
+        int high = Math.max(i, j);
+        // of the pairs with the longest overlap, keep the first in row order
+        if (overlapDays > longestOverlap || (overlapDays == longestOverlap && overlapDays > 0
+            && (low < first || (low == first && high < second)))) {
+          longestOverlap = overlapDays;
+          first = low;
+          second = high;
+        }
+      }
+    }
+
+    // no pair of employees overlaps for at least one day
+    if (longestOverlap == 0) {
+      return longestPair;
+    }
+    longestPair.setOverlapDays(longestOverlap);
+    longestPair.setEmployeeOneId(employeeIds[first]);
+    longestPair.setEmployeeTwoId(employeeIds[second]);
+    return longestPair;
+  }
+}
@@ -0,0 +1,161 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+import models.Employee;
+import models.SolutionResult;
+
+/**
+ * Solves the projects of a project map or a ColumnarDataset on a ForkJoinPool.
+ *
+ * <p>Projects are ordered by estimated cost, largest first, and the ordered range is split by
+ * cost rather than by count. The largest projects therefore start right away on their own tasks,
+ * while the many small projects are batched together, so one huge project does not leave the
+ * pool waiting on it at the end of the run. Results are written into a slot per project and
+ * collected in project order, so the list matches the sequential run exactly.
+ */
+class ParallelProjectSolver {
+  // split a range further while it holds more than 1/(parallelism * TASKS_PER_THREAD) of the work
+  private static final int TASKS_PER_THREAD = 8;
+
+  private final SolutionsService solutionsService;
+
+  ParallelProjectSolver(SolutionsService solutionsService) {
+    this.solutionsService = solutionsService;
+  }
+
+  /**
+   * Solves every project of the map in parallel.
+   *
+   * @param  projectsAndUsersMap Hashmap of a project and all employees that worked on it
+   * @param  pool The ForkJoinPool that solves the projects
+   * @return A List of SolutionResult instances for each project, in map iteration order
+   */
+  List<SolutionResult> solve(HashMap<Long, List<Employee>> projectsAndUsersMap,
+                             ForkJoinPool pool) {
+    int projectCount = projectsAndUsersMap.size();
+    Long[] projectIds = new Long[projectCount];
+    List<List<Employee>> employeeLists = new ArrayList<>(projectCount);
+    for (Map.Entry<Long, List<Employee>> entry : projectsAndUsersMap.entrySet()) {
+      projectIds[employeeLists.size()] = entry.getKey();
+      employeeLists.add(entry.getValue());
+    }
+    return solve(projectCount, project -> employeeLists.get(project).size(),
+                 project -> solutionsService.solveProject(projectIds[project],
+                                                          employeeLists.get(project)), pool);
+  }
+
+  /**
+   * Solves projects 0 to projectCount - 1 in parallel.
+   *
+   * @param  projectCount Number of projects
+   * @param  projectSize Returns the number of employee rows of a project
+   * @param  solver Solves a project, returning null if it has no result
+   * @param  pool The ForkJoinPool that solves the projects
+   * @return A List of SolutionResult instances for each project, in project order
+   */
+  List<SolutionResult> solve(int projectCount, IntUnaryOperator projectSize,
+                             IntFunction<SolutionResult> solver, ForkJoinPool pool) {
+    // order projects by estimated cost, largest first
+    long[] costs = new long[projectCount];
+    Integer[] byCost = new Integer[projectCount];
+    for (int i = 0; i < projectCount; i++) {
+      costs[i] = estimateCost(projectSize.applyAsInt(i));
+      byCost[i] = i;
+    }
+    Arrays.sort(byCost, (a, b) -> Long.compare(costs[b], costs[a]));
+    int[] order = new int[projectCount];
+    for (int i = 0; i < projectCount; i++) {
+      order[i] = byCost[i];
+    }
+
+    // prefix sums of the ordered costs, used to split ranges by work
+    long[] prefixCost = new long[projectCount + 1];
+    for (int i = 0; i < projectCount; i++) {
+      prefixCost[i + 1] = prefixCost[i] + costs[order[i]];
+    }
+    long splitThreshold = Math.max(1,
+        prefixCost[projectCount] / ((long) pool.getParallelism() * TASKS_PER_THREAD));
+
+    SolutionResult[] results = new SolutionResult[projectCount];
+    pool.invoke(new SolveRangeTask(solver, order, prefixCost, splitThreshold, results, 0,
+                                   projectCount));
+
+    List<SolutionResult> solutionResultList = new ArrayList<>();
+    for (SolutionResult result : results) {
+      if (result != null) {
+        solutionResultList.add(result);
+      }
+    }
+    return solutionResultList;
+  }
+
+  /**
+   * Estimates the relative cost of solving a project with the engine selected for its size.
+   *
+   * @param employeeCount Number of employee rows of the project.
+   * @return The estimated cost.
+   */
+  private long estimateCost(int employeeCount) {
+    long n = Math.max(employeeCount, 1);
+    if (solutionsService.selectEngine(employeeCount).getAlgorithm()
+        == OverlapAlgorithm.BRUTE_FORCE) {
+      return n * n;
+    }
+    return n * (64 - Long.numberOfLeadingZeros(n));
+  }
+
+  /** Solves a range of the cost-ordered projects, splitting it while it holds too much work. */
+  private static class SolveRangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final IntFunction<SolutionResult> solver;
+    private final int[] order;
+    private final long[] prefixCost;
+    private final long splitThreshold;
+    private final SolutionResult[] results;
+    private final int from;
+    private final int to;
+
+    SolveRangeTask(IntFunction<SolutionResult> solver, int[] order, long[] prefixCost,
+                   long splitThreshold, SolutionResult[] results, int from, int to) {
+      this.solver = solver;
+      this.order = order;
+      this.prefixCost = prefixCost;
+      this.splitThreshold = splitThreshold;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1 && prefixCost[to] - prefixCost[from] > splitThreshold) {
+        // split where the first half holds about half of the work
+        long halfCost = prefixCost[from] + (prefixCost[to] - prefixCost[from]) / 2;
+        int mid = Arrays.binarySearch(prefixCost, from + 1, to, halfCost);
+        mid = mid >= 0 ? mid : -mid - 1;
+        mid = Math.min(Math.max(mid, from + 1), to - 1);
+        // the larger projects of the first half are solved by this thread right away
+        invokeAll(subTask(from, mid), subTask(mid, to));
+        return;
+      }
+      for (int i = from; i < to; i++) {
+        results[order[i]] = solver.apply(order[i]);
+      }
+    }
+
+    private SolveRangeTask subTask(int subFrom, int subTo) {
+      return new SolveRangeTask(solver, order, prefixCost, splitThreshold, results, subFrom,
+                                subTo);
+    }
+  }
+}
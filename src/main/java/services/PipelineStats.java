@@ -0,0 +1,298 @@
+package services;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.springframework.stereotype.Service;
+
+import models.EngineStats;
+import models.StageStats;
+
+/**
+ * Collects per-stage measurements of a pipeline run: wall time, rows and bytes handled, and the
+ * heap bytes allocated, plus the largest project solved and how long it took, and the time each
+ * overlap engine took per range of project sizes, to tune the adaptive cutoff with. The
+ * measurements can be printed as a report or as JSON and are exposed as a JMX MBean.
+ *
+ * <p>Allocation is read from the HotSpot ThreadMXBean as the sum over all live threads, so the
+ * workers of a ForkJoinPool are counted too, but threads that end during a stage are not.
+ */
+@Service
+public class PipelineStats implements PipelineStatsMXBean {
+  public static final String OBJECT_NAME = "org.example:type=PipelineStats";
+
+  private final List<StageStats> stages = new CopyOnWriteArrayList<>();
+  private long largestProjectId = -1;
+  private int largestProjectSize;
+  private long largestProjectSolveNanos;
+  // keyed by engine ordinal and power of two size range, so the report is ordered by both
+  private final Map<Integer, EngineStats> engines = new TreeMap<>();
+
+  /**
+   * Starts measuring a stage. The stage is recorded when the returned Stage is stopped.
+   *
+   * @param name Name of the stage.
+   * @return The running Stage.
+   */
+  public Stage start(String name) {
+    return new Stage(name);
+  }
+
+  /**
+   * Records the largest project solved so far, keeping the one with the most rows.
+   *
+   * @param projectId  ID of the project.
+   * @param size       Number of rows of the project.
+   * @param solveNanos Time it took to solve the project.
+   */
+  public synchronized void recordLargestProject(long projectId, int size, long solveNanos) {
+    if (size > largestProjectSize) {
+      largestProjectId = projectId;
+      largestProjectSize = size;
+      largestProjectSolveNanos = solveNanos;
+    }
+  }
+
+  /**
+   * Records a project solved by an overlap engine, adding it to the engine's projects of the
+   * same power of two size range.
+   *
+   * @param algorithm  The algorithm of the engine.
+   * @param size       Number of rows of the project.
+   * @param solveNanos Time it took to solve the project.
+   */
+  public synchronized void recordEngine(OverlapAlgorithm algorithm, int size, long solveNanos) {
+    int range = size > 0 ? 31 - Integer.numberOfLeadingZeros(size) : 0;
+    EngineStats engineStats = engines.computeIfAbsent(algorithm.ordinal() * 32 + range, key -> {
+      EngineStats created = new EngineStats();
+      created.setEngine(algorithm.toOptionValue());
+      created.setMinProjectSize(size > 0 ? 1 << range : 0);
+      created.setMaxProjectSize(range < 30 ? (2 << range) - 1 : Integer.MAX_VALUE);
+      return created;
+    });
+    engineStats.setProjects(engineStats.getProjects() + 1);
+    engineStats.setRows(engineStats.getRows() + size);
+    engineStats.setSolveNanos(engineStats.getSolveNanos() + solveNanos);
+  }
+
+  /**
+   * Registers this instance with the platform MBeanServer under OBJECT_NAME, replacing an
+   * instance registered before.
+   */
+  public void registerMBean() {
+    try {
+      MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mbeanServer.isRegistered(objectName)) {
+        mbeanServer.unregisterMBean(objectName);
+      }
+      mbeanServer.registerMBean(this, objectName);
+    } catch (JMException e) {
+      throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+    }
+  }
+
+  @Override
+  public List<StageStats> getStages() {
+    return new ArrayList<>(stages);
+  }
+
+  @Override
+  public double getTotalWallTimeMillis() {
+    double total = 0;
+    for (StageStats stage : stages) {
+      total += stage.getWallTimeMillis();
+    }
+    return total;
+  }
+
+  @Override
+  public long getTotalAllocatedBytes() {
+    long total = 0;
+    for (StageStats stage : stages) {
+      total += stage.getAllocatedBytes();
+    }
+    return total;
+  }
+
+  @Override
+  public synchronized long getLargestProjectId() {
+    return largestProjectId;
+  }
+
+  @Override
+  public synchronized int getLargestProjectSize() {
+    return largestProjectSize;
+  }
+
+  @Override
+  public synchronized double getLargestProjectSolveMillis() {
+    return largestProjectSolveNanos / 1e6;
+  }
+
+  @Override
+  public synchronized List<EngineStats> getEngines() {
+    List<EngineStats> copies = new ArrayList<>(engines.size());
+    for (EngineStats engineStats : engines.values()) {
+      EngineStats copy = new EngineStats();
+      copy.setEngine(engineStats.getEngine());
+      copy.setMinProjectSize(engineStats.getMinProjectSize());
+      copy.setMaxProjectSize(engineStats.getMaxProjectSize());
+      copy.setProjects(engineStats.getProjects());
+      copy.setRows(engineStats.getRows());
+      copy.setSolveNanos(engineStats.getSolveNanos());
+      copies.add(copy);
+    }
+    return copies;
+  }
+
+  /**
+   * Prints the stages as a table, followed by the largest project and the time of each overlap
+   * engine per range of project sizes.
+   *
+   * @param out The stream to print to.
+   */
+  public void printReport(PrintStream out) {
+    out.printf("%-14s %12s %12s %14s %10s %14s%n", "Stage", "Wall ms", "Rows", "Rows/s", "MB/s",
+               "Allocated MB");
+    for (StageStats stage : stages) {
+      out.printf(Locale.ROOT, "%-14s %12.1f %12d %14.0f %10.1f %14.1f%n", stage.getName(),
+                 stage.getWallTimeMillis(), stage.getRows(), stage.getRowsPerSecond(),
+                 stage.getBytesPerSecond() / (1 << 20), stage.getAllocatedBytes() / 1048576.0);
+    }
+    out.printf(Locale.ROOT, "%-14s %12.1f %12s %14s %10s %14.1f%n", "total",
+               getTotalWallTimeMillis(), "", "", "", getTotalAllocatedBytes() / 1048576.0);
+    if (getLargestProjectId() >= 0 || getLargestProjectSize() > 0) {
+      out.printf(Locale.ROOT, "Largest project: %s with %s rows, solved in %.1f ms%n",
+                 getLargestProjectId(), getLargestProjectSize(), getLargestProjectSolveMillis());
+    }
+    List<EngineStats> engineStatsList = getEngines();
+    if (!engineStatsList.isEmpty()) {
+      out.printf("%-14s %16s %12s %12s %12s %14s%n", "Engine", "Project rows", "Projects",
+                 "Rows", "Solve ms", "us/project");
+      for (EngineStats engineStats : engineStatsList) {
+        out.printf(Locale.ROOT, "%-14s %16s %12d %12d %12.1f %14.2f%n", engineStats.getEngine(),
+                   engineStats.getMinProjectSize() + "-" + engineStats.getMaxProjectSize(),
+                   engineStats.getProjects(), engineStats.getRows(),
+                   engineStats.getSolveMillis(), engineStats.getMicrosPerProject());
+      }
+    }
+  }
+
+  @Override
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{\"stages\":[");
+    String separator = "";
+    for (StageStats stage : stages) {
+      json.append(separator)
+          .append("{\"name\":\"").append(escape(stage.getName()))
+          .append("\",\"wallTimeMillis\":").append(format(stage.getWallTimeMillis()))
+          .append(",\"rows\":").append(stage.getRows())
+          .append(",\"bytes\":").append(stage.getBytes())
+          .append(",\"allocatedBytes\":").append(stage.getAllocatedBytes())
+          .append(",\"rowsPerSecond\":").append(format(stage.getRowsPerSecond()))
+          .append(",\"bytesPerSecond\":").append(format(stage.getBytesPerSecond()))
+          .append('}');
+      separator = ",";
+    }
+    json.append("],\"totalWallTimeMillis\":").append(format(getTotalWallTimeMillis()))
+        .append(",\"totalAllocatedBytes\":").append(getTotalAllocatedBytes());
+    synchronized (this) {
+      if (largestProjectSize > 0) {
+        json.append(",\"largestProject\":{\"projectId\":").append(largestProjectId)
+            .append(",\"size\":").append(largestProjectSize)
+            .append(",\"solveMillis\":").append(format(largestProjectSolveNanos / 1e6))
+            .append('}');
+      }
+    }
+    json.append(",\"engines\":[");
+    separator = "";
+    for (EngineStats engineStats : getEngines()) {
+      json.append(separator)
+          .append("{\"engine\":\"").append(escape(engineStats.getEngine()))
+          .append("\",\"minProjectSize\":").append(engineStats.getMinProjectSize())
+          .append(",\"maxProjectSize\":").append(engineStats.getMaxProjectSize())
+          .append(",\"projects\":").append(engineStats.getProjects())
+          .append(",\"rows\":").append(engineStats.getRows())
+          .append(",\"solveMillis\":").append(format(engineStats.getSolveMillis()))
+          .append(",\"microsPerProject\":").append(format(engineStats.getMicrosPerProject()))
+          .append('}');
+      separator = ",";
+    }
+    return json.append("]}").toString();
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  /**
+   * Returns the heap bytes allocated so far by all live threads, or 0 if the JVM does not
+   * measure it.
+   */
+  private static long allocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+      return 0;
+    }
+    com.sun.management.ThreadMXBean hotSpotThreadMXBean =
+        (com.sun.management.ThreadMXBean) threadMXBean;
+    if (!hotSpotThreadMXBean.isThreadAllocatedMemorySupported()
+        || !hotSpotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+      return 0;
+    }
+    long total = 0;
+    for (long bytes : hotSpotThreadMXBean.getThreadAllocatedBytes(
+        threadMXBean.getAllThreadIds())) {
+      // -1 for threads that ended meanwhile
+      total += Math.max(bytes, 0);
+    }
+    return total;
+  }
+
+  /** A stage being measured. */
+  public class Stage {
+    private final String name;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+
+    private Stage(String name) {
+      this.name = name;
+      this.startAllocatedBytes = allocatedBytes();
+      this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Stops measuring and records the stage.
+     *
+     * @param rows  Number of rows the stage handled, 0 if unknown.
+     * @param bytes Number of input bytes the stage handled.
+     * @return The recorded StageStats.
+     */
+    public StageStats stop(long rows, long bytes) {
+      StageStats stageStats = new StageStats();
+      stageStats.setWallTimeNanos(System.nanoTime() - startNanos);
+      stageStats.setName(name);
+      stageStats.setRows(rows);
+      stageStats.setBytes(bytes);
+      stageStats.setAllocatedBytes(Math.max(0, allocatedBytes() - startAllocatedBytes));
+      stages.add(stageStats);
+      return stageStats;
+    }
+  }
+}
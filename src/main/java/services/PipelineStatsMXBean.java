@@ -0,0 +1,26 @@
+package services;
+
+import java.util.List;
+
+import models.EngineStats;
+import models.StageStats;
+
+/** JMX view of the PipelineStats of the current run. */
+public interface PipelineStatsMXBean {
+
+  List<StageStats> getStages();
+
+  double getTotalWallTimeMillis();
+
+  long getTotalAllocatedBytes();
+
+  long getLargestProjectId();
+
+  int getLargestProjectSize();
+
+  double getLargestProjectSolveMillis();
+
+  List<EngineStats> getEngines();
+
+  String toJson();
+}
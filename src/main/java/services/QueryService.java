@@ -0,0 +1,247 @@
+package services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Service;
+
+import models.CollaborationResult;
+import models.ColumnarDataset;
+import models.SolutionResult;
+
+/**
+ * Answers queries against a dataset that is loaded once and kept in memory, for the server mode.
+ *
+ * <p>Answers are cached per loaded dataset: the best pair of each project, the top K pairs for
+ * each K up to MAX_CACHED_TOP_K and the collaborators of each employee. A reload swaps the dataset and its
+ * caches in one step, so a query sees either the old dataset with its answers or the new one,
+ * never a mix. Ad-hoc interval queries go to an IntervalIndex built on load.
+ */
+@Service
+public class QueryService {
+  // Largest K whose top pairs are cached, so clients can't grow the cache without bound
+  public static final int MAX_CACHED_TOP_K = 100;
+  // cached in place of a project's best pair when no two employees overlap on it
+  private static final SolutionResult NO_PAIR = new SolutionResult();
+  // most days together first, then by the employee IDs of the pair
+  private static final Comparator<CollaborationResult> COLLABORATOR_RANKING =
+      Comparator.comparingLong(CollaborationResult::getTotalDaysWorkedTogether).reversed()
+                .thenComparing(CollaborationResult::getEmployeeOneId)
+                .thenComparing(CollaborationResult::getEmployeeTwoId);
+
+  private final CsvReader csvReader;
+  private final SolutionsService solutionsService;
+  private final TopPairsService topPairsService;
+  private volatile LoadedDataset loaded;
+
+  public QueryService(CsvReader csvReader, SolutionsService solutionsService,
+                      TopPairsService topPairsService) {
+    this.csvReader = csvReader;
+    this.solutionsService = solutionsService;
+    this.topPairsService = topPairsService;
+  }
+
+  /**
+   * Loads a CSV file, replacing the dataset loaded before and dropping its cached answers.
+   *
+   * @param pathAndFile The path to the CSV file.
+   * @return The loaded dataset.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public synchronized ColumnarDataset load(String pathAndFile) throws IOException {
+    ColumnarDataset dataset = csvReader.readColumnar(pathAndFile);
+    loaded = new LoadedDataset(pathAndFile, dataset);
+    return dataset;
+  }
+
+  /**
+   * Loads the CSV file of the current dataset again.
+   *
+   * @return The loaded dataset.
+   * @throws IOException If an I/O error occurs while reading the file.
+   * @throws IllegalStateException If no file was loaded yet.
+   */
+  public synchronized ColumnarDataset reload() throws IOException {
+    return load(current().pathAndFile);
+  }
+
+  /**
+   * Returns the loaded dataset.
+   *
+   * @return The dataset.
+   * @throws IllegalStateException If no file was loaded yet.
+   */
+  public ColumnarDataset getDataset() {
+    return current().dataset;
+  }
+
+  /**
+   * Finds the pair of employees with the longest overlap on a project.
+   *
+   * @param  projectId ID of the project
+   * @return The SolutionResult of the project, or null if no two employees overlap on it
+   * @throws IllegalArgumentException If the dataset has no rows for the project
+   */
+  public SolutionResult getBestPair(long projectId) {
+    LoadedDataset current = current();
+    int project = current.dataset.indexOfProject(projectId);
+    if (project < 0) {
+      throw new IllegalArgumentException("Unknown project " + projectId);
+    }
+    SolutionResult solutionResult = current.bestPairs.computeIfAbsent(project, index -> {
+      SolutionResult result = solutionsService.solveProject(current.dataset, index);
+      return result != null ? result : NO_PAIR;
+    });
+    return solutionResult != NO_PAIR ? solutionResult : null;
+  }
+
+  /**
+   * Finds the K pairs with the longest overlaps over the whole dataset, as ranked by
+   * TopPairsService.
+   *
+   * @param  k Number of pairs to return
+   * @return Up to K SolutionResults, best first
+   * @throws IllegalArgumentException If k is not positive
+   */
+  public List<SolutionResult> getTopPairs(int k) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be positive: " + k);
+    }
+    LoadedDataset current = current();
+    if (k > MAX_CACHED_TOP_K) {
+      return Collections.unmodifiableList(topPairsService.getTopPairs(current.dataset, k));
+    }
+    return current.topPairs.computeIfAbsent(k, size -> Collections.unmodifiableList(
+        topPairsService.getTopPairs(current.dataset, size)));
+  }
+
+  /**
+   * Finds every employee who worked together with an employee, with the days they worked
+   * together on each shared project and in total. As in PairAggregationService, the overlaps of
+   * all rows of the two employees on a project are added up.
+   *
+   * @param  employeeId Unique identifier of employee
+   * @return A CollaborationResult per collaborator, lower employee ID as employeeOneId, with most
+   *         days together first; empty if the employee overlapped with nobody
+   */
+  public List<CollaborationResult> getCollaborators(long employeeId) {
+    LoadedDataset current = current();
+    return current.collaborators.computeIfAbsent(
+        employeeId, id -> Collections.unmodifiableList(findCollaborators(current.dataset, id)));
+  }
+
+  /**
+   * Finds everyone who overlapped with an employee on a project within a day range, see
+   * IntervalIndex.findOverlapsWithEmployee.
+   *
+   * @param  employeeId Unique identifier of employee
+   * @param  projectId ID of the project
+   * @param  dayFrom First epoch day of the range
+   * @param  dayTo Epoch day just past the range
+   * @return A SolutionResult per colleague, with the most days together first
+   * @throws IllegalArgumentException If the dataset has no rows for the project
+   */
+  public List<SolutionResult> getOverlapsWithEmployee(long employeeId, long projectId,
+                                                      int dayFrom, int dayTo) {
+    LoadedDataset current = current();
+    if (current.dataset.indexOfProject(projectId) < 0) {
+      throw new IllegalArgumentException("Unknown project " + projectId);
+    }
+    return current.intervalIndex.findOverlapsWithEmployee(employeeId, projectId, dayFrom,
+                                                          dayTo);
+  }
+
+  /**
+   * Finds every pair of rows of different employees that both cover a day, see
+   * IntervalIndex.findPairsActiveOn.
+   *
+   * @param  day The epoch day
+   * @return A SolutionResult per pair of rows, ordered by project ID
+   */
+  public List<SolutionResult> getPairsActiveOn(int day) {
+    return current().intervalIndex.findPairsActiveOn(day);
+  }
+
+  private List<CollaborationResult> findCollaborators(ColumnarDataset dataset, long employeeId) {
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+    Map<Long, CollaborationResult> collaborations = new HashMap<>();
+    Map<Long, Integer> projectDays = new HashMap<>();
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      // add up the overlaps of every row of the employee with the rows of the others
+      projectDays.clear();
+      int start = dataset.projectStart(project);
+      int end = dataset.projectEnd(project);
+      for (int i = start; i < end; i++) {
+        if (employeeIds[i] != employeeId) {
+          continue;
+        }
+        for (int j = start; j < end; j++) {
+          int days = Math.min(dayTo[i], dayTo[j]) - Math.max(dayFrom[i], dayFrom[j]);
+          if (employeeIds[j] != employeeId && days > 0) {
+            projectDays.merge(employeeIds[j], days, Integer::sum);
+          }
+        }
+      }
+
+      for (Map.Entry<Long, Integer> entry : projectDays.entrySet()) {
+        long low = Math.min(employeeId, entry.getKey());
+        long high = Math.max(employeeId, entry.getKey());
+        CollaborationResult collaboration = collaborations.computeIfAbsent(
+            entry.getKey(), collaborator -> {
+              CollaborationResult result = new CollaborationResult();
+              result.setEmployeeOneId(low);
+              result.setEmployeeTwoId(high);
+              result.setProjects(new ArrayList<>());
+              return result;
+            });
+        SolutionResult solutionResult = new SolutionResult();
+        solutionResult.setProjectId(dataset.projectIdAt(project));
+        solutionResult.setEmployeeOneId(low);
+        solutionResult.setEmployeeTwoId(high);
+        solutionResult.setDaysWorkedTogether(entry.getValue());
+        collaboration.getProjects().add(solutionResult);
+        collaboration.setTotalDaysWorkedTogether(
+            collaboration.getTotalDaysWorkedTogether() + entry.getValue());
+      }
+    }
+
+    List<CollaborationResult> collaborators = new ArrayList<>(collaborations.values());
+    collaborators.sort(COLLABORATOR_RANKING);
+    return collaborators;
+  }
+
+  private LoadedDataset current() {
+    LoadedDataset current = loaded;
+    if (current == null) {
+      throw new IllegalStateException("No dataset loaded");
+    }
+    return current;
+  }
+
+  /** A loaded dataset with the answers cached for it. */
+  private static class LoadedDataset {
+    private final String pathAndFile;
+    private final ColumnarDataset dataset;
+    private final IntervalIndex intervalIndex;
+    // keyed by project index
+    private final Map<Integer, SolutionResult> bestPairs = new ConcurrentHashMap<>();
+    // keyed by K
+    private final Map<Integer, List<SolutionResult>> topPairs = new ConcurrentHashMap<>();
+    // keyed by employee ID
+    private final Map<Long, List<CollaborationResult>> collaborators = new ConcurrentHashMap<>();
+
+    LoadedDataset(String pathAndFile, ColumnarDataset dataset) {
+      this.pathAndFile = pathAndFile;
+      this.dataset = dataset;
+      this.intervalIndex = new IntervalIndex(dataset);
+    }
+  }
+}
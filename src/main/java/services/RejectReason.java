@@ -0,0 +1,21 @@
+package services;
+
+/** Why a CSV line was ignored. */
+public enum RejectReason {
+  // the employee or project ID is not a valid long
+  BAD_ID("bad id"),
+  // a date matches none of the supported formats
+  BAD_DATE("bad date"),
+  // the line has fewer than four fields
+  WRONG_COLUMN_COUNT("wrong column count");
+
+  private final String description;
+
+  RejectReason(String description) {
+    this.description = description;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+}
@@ -0,0 +1,38 @@
+package services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Receives the CSV lines the parsers ignore. Closing the sink finishes any pending output and
+ * reports the summary of the run.
+ */
+public interface RejectSink extends Closeable {
+
+  /**
+   * Accepts an ignored line.
+   *
+   * @param reason     Why the line was ignored.
+   * @param lineNumber The 1-based line number in the input, or 0 if unknown.
+   * @param line       The raw line, without its line break.
+   */
+  void reject(RejectReason reason, long lineNumber, String line);
+
+  /**
+   * Accepts an ignored line of one of several input files. Sinks that don't record the file
+   * get it in front of the line.
+   *
+   * @param reason     Why the line was ignored.
+   * @param source     The file the line was read from.
+   * @param lineNumber The 1-based line number within the file, or 0 if unknown.
+   * @param line       The raw line, without its line break.
+   */
+  default void reject(RejectReason reason, Path source, long lineNumber, String line) {
+    reject(reason, lineNumber, source + ": " + line);
+  }
+
+  @Override
+  default void close() throws IOException {
+  }
+}
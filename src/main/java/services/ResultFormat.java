@@ -0,0 +1,32 @@
+package services;
+
+/** The ResultFormat enum lists the formats the SolutionResults of a run can be written in:
+ *   TEXT: The console lines "Project ID: 1, Total Days: 10, Emp1: 2, Emp2: 3".
+ *   CSV: A header line, then "projectId,employeeOneId,employeeTwoId,daysWorkedTogether" rows.
+ *   JSON_LINES: One JSON object per line, with the field names of SolutionResult.
+ *   BINARY: A magic number, then a fixed-size big-endian record per result, see
+ *     BinaryResultWriter.
+ */
+public enum ResultFormat {
+  TEXT,
+  CSV,
+  JSON_LINES,
+  BINARY;
+
+  /**
+   * Resolves a format from a command line value, ignoring case and dashes.
+   *
+   * @param value The command line value, e.g. "csv" or "json-lines".
+   * @return The matching ResultFormat.
+   * @throws IllegalArgumentException If the value does not name a known format.
+   */
+  public static ResultFormat fromOptionValue(String value) {
+    String normalized = value.trim().toUpperCase().replace('-', '_');
+    for (ResultFormat format : values()) {
+      if (format.name().equals(normalized)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unknown result format: " + value);
+  }
+}
@@ -0,0 +1,204 @@
+package services;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import models.SolutionResult;
+
+/**
+ * Writes SolutionResults to a stream one at a time, as they are produced. Each writer formats
+ * into its own large byte buffer, with hand-written number formatting instead of a Formatter,
+ * and hands the stream whole buffers only. Closing the writer flushes the buffer and closes
+ * the stream.
+ *
+ * <p>A writer is a Consumer of SolutionResults, so it can be handed to the services that solve
+ * project by project; an IOException then surfaces as an UncheckedIOException.
+ */
+public abstract class ResultWriter implements Consumer<SolutionResult>, Closeable {
+  public static final int BUFFER_SIZE = 256 * 1024;
+  // longest decimal long, "-9223372036854775808"
+  private static final int MAX_LONG_DIGITS = 20;
+  private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE)
+                                             .getBytes(StandardCharsets.US_ASCII);
+
+  private final OutputStream out;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private long count;
+
+  protected ResultWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Creates the writer of a format.
+   *
+   * @param format The ResultFormat.
+   * @param out    The stream to write to, closed with the writer.
+   * @return The ResultWriter.
+   * @throws IOException If the writer's header cannot be written.
+   */
+  public static ResultWriter create(ResultFormat format, OutputStream out) throws IOException {
+    switch (format) {
+      case CSV:
+        return new CsvResultWriter(out);
+      case JSON_LINES:
+        return new JsonLinesResultWriter(out);
+      case BINARY:
+        return new BinaryResultWriter(out);
+      default:
+        return new TextResultWriter(out);
+    }
+  }
+
+  /**
+   * Creates the writer of a format for the standard output, which stays open when the writer
+   * is closed.
+   *
+   * @param format The ResultFormat.
+   * @return The ResultWriter.
+   * @throws IOException If the writer's header cannot be written.
+   */
+  public static ResultWriter toStandardOutput(ResultFormat format) throws IOException {
+    return create(format, new FilterOutputStream(System.out) {
+      @Override
+      public void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+      }
+
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+    });
+  }
+
+  /**
+   * Writes a SolutionResult.
+   *
+   * @param solutionResult The SolutionResult.
+   * @throws IOException If an I/O error occurs while writing.
+   */
+  public void write(SolutionResult solutionResult) throws IOException {
+    format(solutionResult);
+    count++;
+  }
+
+  @Override
+  public void accept(SolutionResult solutionResult) {
+    try {
+      write(solutionResult);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Returns the number of SolutionResults written. */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Writes the buffer to the stream and flushes it.
+   *
+   * @throws IOException If an I/O error occurs while writing.
+   */
+  public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flushBuffer();
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Formats a SolutionResult into the buffer.
+   *
+   * @param solutionResult The SolutionResult.
+   * @throws IOException If an I/O error occurs while writing a full buffer.
+   */
+  protected abstract void format(SolutionResult solutionResult) throws IOException;
+
+  /** Makes room for the given number of bytes, writing the buffer out if it is too full. */
+  protected final void reserve(int bytes) throws IOException {
+    if (position + bytes > buffer.length) {
+      flushBuffer();
+    }
+  }
+
+  /** Appends bytes, such as a constant ASCII label, to the buffer. */
+  protected final void writeBytes(byte[] bytes) throws IOException {
+    reserve(bytes.length);
+    System.arraycopy(bytes, 0, buffer, position, bytes.length);
+    position += bytes.length;
+  }
+
+  /** Appends a single byte to the buffer. */
+  protected final void writeByte(int value) throws IOException {
+    reserve(1);
+    buffer[position++] = (byte) value;
+  }
+
+  /** Appends the decimal ASCII digits of a number to the buffer. */
+  protected final void writeDecimal(long value) throws IOException {
+    reserve(MAX_LONG_DIGITS);
+    if (value == Long.MIN_VALUE) {
+      writeBytes(MIN_LONG);
+      return;
+    }
+    if (value < 0) {
+      buffer[position++] = '-';
+      value = -value;
+    }
+    int digits = 1;
+    for (long rest = value / 10; rest != 0; rest /= 10) {
+      digits++;
+    }
+    // fill the digits from the last one backwards
+    int end = position + digits;
+    for (int i = end - 1; i >= position; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    position = end;
+  }
+
+  /** Appends a number as eight big-endian bytes to the buffer. */
+  protected final void writeBinaryLong(long value) throws IOException {
+    reserve(Long.BYTES);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      buffer[position++] = (byte) (value >>> shift);
+    }
+  }
+
+  /** Appends a number as four big-endian bytes to the buffer. */
+  protected final void writeBinaryInt(int value) throws IOException {
+    reserve(Integer.BYTES);
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      buffer[position++] = (byte) (value >>> shift);
+    }
+  }
+
+  /** Returns the ASCII bytes of a constant label. */
+  protected static byte[] ascii(String text) {
+    return text.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private void flushBuffer() throws IOException {
+    if (position > 0) {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+}
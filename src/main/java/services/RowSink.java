@@ -0,0 +1,18 @@
+package services;
+
+/**
+ * Receives the rows accepted by a CSV parser, already parsed to primitives.
+ */
+@FunctionalInterface
+public interface RowSink {
+
+  /**
+   * Accepts one parsed row.
+   *
+   * @param employeeId The employee ID.
+   * @param projectId  The project ID.
+   * @param dayFrom    The start date as an epoch day.
+   * @param dayTo      The end date as an epoch day.
+   */
+  void accept(long employeeId, long projectId, int dayFrom, int dayTo);
+}
@@ -0,0 +1,288 @@
+package services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Service;
+
+import models.ColumnarDataset;
+import models.SolutionResult;
+
+/**
+ * Solves the projects of CSV files on several local worker JVMs.
+ *
+ * <p>The coordinator parses the files once and hash-partitions the rows by project ID into one
+ * binary shard file per worker, keeping file order within every shard. Projects never cross
+ * shards, so each worker solves whole projects on its own: it loads its shard into a
+ * ColumnarDataset, solves it and writes its results, ordered by project ID, to a result file
+ * in the format of BinaryResultWriter.
+ * The coordinator then merges the result files on project ID, so the results, including ties,
+ * are the same as the ones of a single JVM.
+ *
+ * <p>Workers run the main class given to {@link #setWorkerMainClass}, which must call
+ * {@link #solveShard} with its arguments, on the classpath of the coordinator.
+ */
+@Service
+public class ShardedSolutionsService {
+  // Bytes of a row in a shard file: employeeId, projectId, dayFrom, dayTo
+  private static final int SHARD_ROW_BYTES = 2 * Long.BYTES + 2 * Integer.BYTES;
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final MappedCsvParser mappedCsvParser = new MappedCsvParser();
+  private final SolutionsService solutionsService;
+  private String workerMainClass = "org.example.ShardWorker";
+  private List<String> workerJvmOptions = new ArrayList<>();
+
+  public ShardedSolutionsService() {
+    this(new SolutionsService());
+  }
+
+  public ShardedSolutionsService(SolutionsService solutionsService) {
+    this.solutionsService = solutionsService;
+  }
+
+  /**
+   * Sets where the lines that can't be parsed go.
+   *
+   * @param rejectSink The RejectSink.
+   */
+  public void setRejectSink(RejectSink rejectSink) {
+    mappedCsvParser.setRejectSink(rejectSink);
+  }
+
+  /**
+   * Sets the date "NULL" dates stand for.
+   *
+   * @param asOf The as-of date, or null for the day each parse starts.
+   */
+  public void setAsOf(LocalDate asOf) {
+    mappedCsvParser.setAsOf(asOf);
+  }
+
+  public String getWorkerMainClass() {
+    return workerMainClass;
+  }
+
+  public void setWorkerMainClass(String workerMainClass) {
+    this.workerMainClass = workerMainClass;
+  }
+
+  public List<String> getWorkerJvmOptions() {
+    return workerJvmOptions;
+  }
+
+  /**
+   * Sets the options every worker JVM is started with, such as "-Xmx2g".
+   *
+   * @param workerJvmOptions The JVM options.
+   */
+  public void setWorkerJvmOptions(List<String> workerJvmOptions) {
+    this.workerJvmOptions = workerJvmOptions;
+  }
+
+  /**
+   * Generate a SolutionResult object of each project of CSV files, solving the shards on worker
+   * JVMs.
+   *
+   * @param  sources The CSV files
+   * @param  shards Number of shards and worker JVMs
+   * @return A List of SolutionResult instances for each project, ordered by project ID
+   * @throws IOException If an I/O error occurs, or a worker fails
+   */
+  public List<SolutionResult> getSolutionResults(List<Path> sources, int shards)
+      throws IOException {
+    List<SolutionResult> solutionResultList = new ArrayList<>();
+    solve(sources, shards, solutionResultList::add);
+    return solutionResultList;
+  }
+
+  /**
+   * Solves the projects of CSV files on worker JVMs, handing each SolutionResult to a consumer
+   * in project ID order.
+   *
+   * @param  sources The CSV files
+   * @param  shards Number of shards and worker JVMs
+   * @param  resultConsumer Receives the SolutionResult of every project on which two employees
+   *         overlap
+   * @throws IOException If an I/O error occurs, or a worker fails
+   */
+  public void solve(List<Path> sources, int shards, Consumer<SolutionResult> resultConsumer)
+      throws IOException {
+    if (shards < 1) {
+      throw new IllegalArgumentException("Number of shards must be positive: " + shards);
+    }
+    Path directory = Files.createTempDirectory("overlap-shards");
+    List<Path> files = new ArrayList<>();
+    List<Process> workers = new ArrayList<>();
+    try {
+      // partition the rows by project
+      List<Path> shardFiles = new ArrayList<>(shards);
+      List<Path> resultFiles = new ArrayList<>(shards);
+      for (int shard = 0; shard < shards; shard++) {
+        shardFiles.add(directory.resolve("shard-" + shard + ".bin"));
+        resultFiles.add(directory.resolve("results-" + shard + ".bin"));
+      }
+      files.addAll(shardFiles);
+      files.addAll(resultFiles);
+      writeShards(sources, shardFiles);
+
+      // solve every shard on its own JVM
+      for (int shard = 0; shard < shards; shard++) {
+        workers.add(startWorker(shardFiles.get(shard), resultFiles.get(shard)));
+      }
+      for (int shard = 0; shard < shards; shard++) {
+        int exitCode = waitFor(workers.get(shard));
+        if (exitCode != 0) {
+          throw new IOException("Worker of shard " + shard + " failed with exit code " + exitCode);
+        }
+      }
+      mergeResults(resultFiles, resultConsumer);
+    } finally {
+      for (Process worker : workers) {
+        worker.destroy();
+      }
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  /**
+   * Solves one shard, the work of a worker JVM: loads the rows of a shard file, solves its
+   * projects and writes the results, ordered by project ID, to a result file.
+   *
+   * @param  shardFile The shard file written by the coordinator
+   * @param  resultFile The file the results are written to
+   * @throws IOException If an I/O error occurs while reading or writing the files
+   */
+  public void solveShard(Path shardFile, Path resultFile) throws IOException {
+    int rows = (int) (Files.size(shardFile) / SHARD_ROW_BYTES);
+    ColumnarDataset.Builder builder = new ColumnarDataset.Builder(rows);
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(shardFile), BUFFER_SIZE))) {
+      for (int row = 0; row < rows; row++) {
+        builder.add(input.readLong(), input.readLong(), input.readInt(), input.readInt());
+      }
+    }
+
+    // results are written as the projects are solved
+    try (BinaryResultWriter resultWriter =
+        new BinaryResultWriter(Files.newOutputStream(resultFile))) {
+      solutionsService.solve(builder.build(), resultWriter);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Returns the shard of a project. The ID is mixed first, so consecutive or strided IDs still
+   * spread evenly.
+   *
+   * @param projectId ID of the project
+   * @param shards    Number of shards
+   * @return The shard, from 0 to shards - 1
+   */
+  static int shardOf(long projectId, int shards) {
+    return (int) (((projectId * 0x9E3779B97F4A7C15L) >>> 32) % shards);
+  }
+
+  /** Parses the sources once and appends every row to the shard file of its project. */
+  private void writeShards(List<Path> sources, List<Path> shardFiles) throws IOException {
+    int shards = shardFiles.size();
+    DataOutputStream[] outputs = new DataOutputStream[shards];
+    try {
+      for (int shard = 0; shard < shards; shard++) {
+        outputs[shard] = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(shardFiles.get(shard)), BUFFER_SIZE / shards + 8192));
+      }
+      RowSink sink = (employeeId, projectId, dayFrom, dayTo) -> {
+        DataOutputStream output = outputs[shardOf(projectId, shards)];
+        try {
+          output.writeLong(employeeId);
+          output.writeLong(projectId);
+          output.writeInt(dayFrom);
+          output.writeInt(dayTo);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      };
+      mappedCsvParser.parseFiles(sources, sink);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      for (DataOutputStream output : outputs) {
+        if (output != null) {
+          output.close();
+        }
+      }
+    }
+  }
+
+  private Process startWorker(Path shardFile, Path resultFile) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(workerJvmOptions);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(workerMainClass);
+    command.add(shardFile.toString());
+    command.add(resultFile.toString());
+    command.add(solutionsService.getOverlapAlgorithm().name());
+    command.add(String.valueOf(solutionsService.getBruteForceCutoff()));
+    return new ProcessBuilder(command).inheritIO().start();
+  }
+
+  private static int waitFor(Process worker) throws IOException {
+    try {
+      return worker.waitFor();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a worker", e);
+    }
+  }
+
+  /**
+   * Merges the result files, each ordered by project ID, into one stream ordered by project ID.
+   */
+  private static void mergeResults(List<Path> resultFiles,
+                                   Consumer<SolutionResult> resultConsumer) throws IOException {
+    List<BinaryResultReader> readers = new ArrayList<>(resultFiles.size());
+    List<SolutionResult> heads = new ArrayList<>(resultFiles.size());
+    // indexes of the readers, by the project ID of their next result
+    PriorityQueue<Integer> next = new PriorityQueue<>(
+        (a, b) -> Long.compare(heads.get(a).getProjectId(), heads.get(b).getProjectId()));
+    try {
+      for (Path resultFile : resultFiles) {
+        readers.add(new BinaryResultReader(Files.newInputStream(resultFile)));
+        heads.add(readers.get(readers.size() - 1).read());
+        if (heads.get(heads.size() - 1) != null) {
+          next.add(heads.size() - 1);
+        }
+      }
+      while (!next.isEmpty()) {
+        int reader = next.poll();
+        resultConsumer.accept(heads.get(reader));
+        heads.set(reader, readers.get(reader).read());
+        if (heads.get(reader) != null) {
+          next.add(reader);
+        }
+      }
+    } finally {
+      for (BinaryResultReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+}
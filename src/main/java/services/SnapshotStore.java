@@ -0,0 +1,339 @@
+package services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+import org.springframework.stereotype.Service;
+
+import models.ColumnarDataset;
+
+/**
+ * Stores a parsed, project-grouped ColumnarDataset as a compact binary snapshot next to its CSV
+ * source ("file.csv" gets "file.csv.snapshot"), and loads it instead of parsing the CSV again
+ * while the source is unchanged.
+ *
+ * <p>A snapshot is used only if the size, modification time and CRC32C content hash of the
+ * source match the ones recorded in it, and if it was written with the as-of day of the run
+ * that loads it, since "NULL" end dates are stored already resolved to that day (see
+ * DateParser). Layout, little endian, with the long sections first so every value is naturally
+ * aligned and the file can be memory-mapped and copied into arrays in bulk:
+ * <pre>
+ *   header   magic "EMPSNAP1", int version, int rowCount, int projectCount, int asOfDay,
+ *            long sourceSize, long sourceModified, long sourceHash
+ *   long[projectCount]     project IDs, ascending
+ *   long[rowCount]         employee ID of each row
+ *   int[projectCount + 1]  per-project row offsets
+ *   int[rowCount]          start epoch day of each row
+ *   int[rowCount]          end epoch day of each row
+ * </pre>
+ */
+@Service
+public class SnapshotStore {
+  public static final String SNAPSHOT_SUFFIX = ".snapshot";
+  private static final long MAGIC = 0x45_4D_50_53_4E_41_50_31L; // "EMPSNAP1"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 48;
+  // Files are mapped in windows of at most this many bytes
+  private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+  /**
+   * Returns the snapshot path of a CSV source.
+   *
+   * @param source The CSV file.
+   * @return The path of its snapshot.
+   */
+  public Path snapshotPathFor(Path source) {
+    return source.resolveSibling(source.getFileName() + SNAPSHOT_SUFFIX);
+  }
+
+  /**
+   * Loads the snapshot of a source if it is still valid for a run as of today.
+   *
+   * @param source The CSV file.
+   * @return The dataset stored in the snapshot, or null if there is no valid snapshot.
+   * @throws IOException If an I/O error occurs while reading the files.
+   */
+  public ColumnarDataset load(Path source) throws IOException {
+    return load(source, fingerprint(source), new DateParser().getAsOfDay());
+  }
+
+  /**
+   * Loads the snapshot of a source if it matches a fingerprint of the source and the as-of day
+   * of the run.
+   *
+   * @param source      The CSV file.
+   * @param fingerprint The fingerprint of the source, see {@link #fingerprint}.
+   * @param asOfDay     The epoch day "NULL" dates resolve to in the run.
+   * @return The dataset stored in the snapshot, or null if there is no valid snapshot.
+   * @throws IOException If an I/O error occurs while reading the snapshot.
+   */
+  public ColumnarDataset load(Path source, Fingerprint fingerprint, int asOfDay)
+      throws IOException {
+    Path snapshot = snapshotPathFor(source);
+    if (!Files.isRegularFile(snapshot)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        return null;
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                                 .order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+        return null;
+      }
+      int rowCount = header.getInt();
+      int projectCount = header.getInt();
+      int snapshotAsOfDay = header.getInt();
+      long sourceSize = header.getLong();
+      long sourceModified = header.getLong();
+      long sourceHash = header.getLong();
+      if (snapshotAsOfDay != asOfDay
+          || sourceSize != fingerprint.size
+          || sourceModified != fingerprint.modified
+          || sourceHash != fingerprint.hash) {
+        return null;
+      }
+      if (channel.size() != HEADER_SIZE + columnsSize(rowCount, projectCount)) {
+        return null;
+      }
+      return readColumns(channel, HEADER_SIZE, rowCount, projectCount);
+    }
+  }
+
+  /**
+   * Writes the snapshot of a source. The snapshot is written to a temporary file first and moved
+   * into place, so readers never see a partial snapshot.
+   *
+   * <p>The fingerprint must be taken before the source is parsed: if the source changes while it
+   * is parsed, the snapshot then records the old fingerprint and is never loaded for the new
+   * content.
+   *
+   * @param source      The CSV file the dataset was parsed from.
+   * @param fingerprint The fingerprint of the source, taken before it was parsed.
+   * @param asOfDay     The epoch day "NULL" dates were resolved to in the parse.
+   * @param dataset     The parsed dataset.
+   * @throws IOException If an I/O error occurs while writing the snapshot.
+   */
+  public void save(Path source, Fingerprint fingerprint, int asOfDay, ColumnarDataset dataset)
+      throws IOException {
+    Path snapshot = snapshotPathFor(source);
+    // a file of its own, so concurrent runs on the same source never write into each other's
+    Path temporary = Files.createTempFile(snapshot.toAbsolutePath().getParent(),
+                                          snapshot.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                                                  StandardOpenOption.WRITE)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC)
+              .putInt(VERSION)
+              .putInt(dataset.size())
+              .putInt(dataset.projectCount())
+              .putInt(asOfDay)
+              .putLong(fingerprint.size)
+              .putLong(fingerprint.modified)
+              .putLong(fingerprint.hash)
+              .flip();
+        while (header.hasRemaining()) {
+          channel.write(header, header.position());
+        }
+
+        writeColumns(channel, HEADER_SIZE, dataset);
+        channel.force(false);
+      }
+      Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                 StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporary);
+      throw e;
+    }
+  }
+
+  /**
+   * Takes the fingerprint a snapshot of a source is validated against.
+   *
+   * @param source The CSV file.
+   * @return The size, modification time and content hash of the source.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public Fingerprint fingerprint(Path source) throws IOException {
+    // size and time first, so a write during the hash leaves a fingerprint that matches neither
+    long size = Files.size(source);
+    long modified = Files.getLastModifiedTime(source).toMillis();
+    return new Fingerprint(size, modified, contentHash(source));
+  }
+
+  /**
+   * Computes the CRC32C hash of a file's content, reading it through memory-mapped windows.
+   *
+   * @param source The file.
+   * @return The hash.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  public long contentHash(Path source) throws IOException {
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      return contentHash(channel, 0, channel.size());
+    }
+  }
+
+  /**
+   * Computes the CRC32C hash of a byte range of a file, reading it through memory-mapped windows.
+   *
+   * @param channel The open file.
+   * @param start   Offset of the first byte of the range.
+   * @param end     Offset just past the last byte of the range.
+   * @return The hash.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  static long contentHash(FileChannel channel, long start, long end) throws IOException {
+    CRC32C crc = new CRC32C();
+    for (long position = start; position < end; position += WINDOW_SIZE) {
+      long length = Math.min(WINDOW_SIZE, end - position);
+      crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Returns the number of bytes the columns of a dataset take, see {@link #writeColumns}.
+   */
+  static long columnsSize(int rowCount, int projectCount) {
+    return Long.BYTES * ((long) projectCount + rowCount)
+        + Integer.BYTES * (projectCount + 1L + 2L * rowCount);
+  }
+
+  /**
+   * Writes the columns of a dataset in the snapshot layout, starting at a position of a file.
+   *
+   * @param channel  The file, open for reading and writing.
+   * @param position Offset the columns start at.
+   * @param dataset  The dataset.
+   * @return The offset just past the columns.
+   * @throws IOException If an I/O error occurs while writing the file.
+   */
+  static long writeColumns(FileChannel channel, long position, ColumnarDataset dataset)
+      throws IOException {
+    int rowCount = dataset.size();
+    int projectCount = dataset.projectCount();
+    long[] projectIds = new long[projectCount];
+    for (int project = 0; project < projectCount; project++) {
+      projectIds[project] = dataset.projectIdAt(project);
+    }
+    position = writeLongs(channel, position, projectIds, projectCount);
+    position = writeLongs(channel, position, dataset.employeeIdColumn(), rowCount);
+    position = writeInts(channel, position, dataset.projectOffsets(), projectCount + 1);
+    position = writeInts(channel, position, dataset.fromDayColumn(), rowCount);
+    return writeInts(channel, position, dataset.toDayColumn(), rowCount);
+  }
+
+  /**
+   * Reads the columns written by {@link #writeColumns} back into a dataset.
+   *
+   * @param channel      The open file.
+   * @param position     Offset the columns start at.
+   * @param rowCount     Number of rows of the dataset.
+   * @param projectCount Number of projects of the dataset.
+   * @return The dataset.
+   * @throws IOException If an I/O error occurs while reading the file.
+   */
+  static ColumnarDataset readColumns(FileChannel channel, long position, int rowCount,
+                                     int projectCount) throws IOException {
+    long[] projectIds = new long[projectCount];
+    position = readLongs(channel, position, projectIds);
+    long[] employeeId = new long[rowCount];
+    position = readLongs(channel, position, employeeId);
+    int[] projectOffsets = new int[projectCount + 1];
+    position = readInts(channel, position, projectOffsets);
+    int[] fromDay = new int[rowCount];
+    position = readInts(channel, position, fromDay);
+    int[] toDay = new int[rowCount];
+    readInts(channel, position, toDay);
+
+    // the project ID column follows from the offset table
+    long[] projectId = new long[rowCount];
+    for (int project = 0; project < projectCount; project++) {
+      Arrays.fill(projectId, projectOffsets[project], projectOffsets[project + 1],
+                  projectIds[project]);
+    }
+    return new ColumnarDataset(employeeId, projectId, fromDay, toDay, projectIds,
+                               projectOffsets);
+  }
+
+  static long readLongs(FileChannel channel, long position, long[] values)
+      throws IOException {
+    int done = 0;
+    while (done < values.length) {
+      int count = (int) Math.min(values.length - done, WINDOW_SIZE / Long.BYTES);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                            (long) count * Long.BYTES);
+      buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(values, done, count);
+      position += (long) count * Long.BYTES;
+      done += count;
+    }
+    return position;
+  }
+
+  static long readInts(FileChannel channel, long position, int[] values)
+      throws IOException {
+    int done = 0;
+    while (done < values.length) {
+      int count = (int) Math.min(values.length - done, WINDOW_SIZE / Integer.BYTES);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                            (long) count * Integer.BYTES);
+      buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, done, count);
+      position += (long) count * Integer.BYTES;
+      done += count;
+    }
+    return position;
+  }
+
+  static long writeLongs(FileChannel channel, long position, long[] values, int length)
+      throws IOException {
+    int done = 0;
+    while (done < length) {
+      int count = (int) Math.min(length - done, WINDOW_SIZE / Long.BYTES);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                                            (long) count * Long.BYTES);
+      buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(values, done, count);
+      position += (long) count * Long.BYTES;
+      done += count;
+    }
+    return position;
+  }
+
+  static long writeInts(FileChannel channel, long position, int[] values, int length)
+      throws IOException {
+    int done = 0;
+    while (done < length) {
+      int count = (int) Math.min(length - done, WINDOW_SIZE / Integer.BYTES);
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                                            (long) count * Integer.BYTES);
+      buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(values, done, count);
+      position += (long) count * Integer.BYTES;
+      done += count;
+    }
+    return position;
+  }
+
+  /** Size, modification time and CRC32C content hash of a source at one point in time. */
+  public static final class Fingerprint {
+    private final long size;
+    private final long modified;
+    private final long hash;
+
+    private Fingerprint(long size, long modified, long hash) {
+      this.size = size;
+      this.modified = modified;
+      this.hash = hash;
+    }
+  }
+}
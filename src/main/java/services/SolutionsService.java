@@ -1,25 +1,133 @@
 package services;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import models.ColumnarDataset;
 import models.Employee;
 import models.EmployeeWithProject;
 import models.LongestPair;
 import models.SolutionResult;
+import utils.LongIntHashMap;
 
 @Service
 public class SolutionsService {
+  // Projects below this many rows are solved by brute force in the adaptive mode
+  public static final int DEFAULT_BRUTE_FORCE_CUTOFF = 32;
+
+  // Algorithm used to find the pair of employees with the longest overlap on a project
+  private OverlapAlgorithm overlapAlgorithm = OverlapAlgorithm.ADAPTIVE;
+  private int bruteForceCutoff = DEFAULT_BRUTE_FORCE_CUTOFF;
+  private final Map<OverlapAlgorithm, OverlapEngine> overlapEngines =
+      new EnumMap<>(OverlapAlgorithm.class);
+  // Resolves "NULL" dates of returnSolutionFromLine to the day the service was created or set to
+  private DateParser dateParser = new DateParser();
+  private RejectSink rejectSink = new ConsoleRejectSink();
+  // Records the largest project and its solve time, if set
+  private PipelineStats pipelineStats;
+
+  public SolutionsService() {
+    this(Arrays.asList(new BruteForceOverlapEngine(), new SweepLineOverlapFinder(),
+                       new PairScanOverlapEngine()));
+  }
+
+  /**
+   * Creates the service with the given overlap engines, such as the OverlapEngine beans of an
+   * application context.
+   *
+   * @param overlapEngines The engines, which must include brute force and the sweep line.
+   */
+  @Autowired
+  public SolutionsService(List<OverlapEngine> overlapEngines) {
+    for (OverlapEngine overlapEngine : overlapEngines) {
+      this.overlapEngines.put(overlapEngine.getAlgorithm(), overlapEngine);
+    }
+    if (!this.overlapEngines.containsKey(OverlapAlgorithm.BRUTE_FORCE)
+        || !this.overlapEngines.containsKey(OverlapAlgorithm.SWEEP_LINE)) {
+      throw new IllegalArgumentException("The brute force and sweep line engines are required");
+    }
+  }
+
+  public OverlapAlgorithm getOverlapAlgorithm() {
+    return overlapAlgorithm;
+  }
+
+  public void setOverlapAlgorithm(OverlapAlgorithm overlapAlgorithm) {
+    this.overlapAlgorithm = overlapAlgorithm;
+  }
+
+  public int getBruteForceCutoff() {
+    return bruteForceCutoff;
+  }
+
+  /**
+   * Sets the project size from which the adaptive mode uses the sweep line instead of brute
+   * force.
+   *
+   * @param bruteForceCutoff Number of rows; projects with fewer rows are solved by brute force.
+   */
+  public void setBruteForceCutoff(int bruteForceCutoff) {
+    this.bruteForceCutoff = bruteForceCutoff;
+  }
+
+  /**
+   * Selects the engine that solves a project of the given size: the one of the selected
+   * OverlapAlgorithm, or in the adaptive mode brute force below the cutoff and the sweep line
+   * from it.
+   *
+   * @param projectSize Number of rows of the project.
+   * @return The OverlapEngine.
+   * @throws IllegalStateException If the selected algorithm has no engine.
+   */
+  public OverlapEngine selectEngine(int projectSize) {
+    OverlapAlgorithm algorithm = overlapAlgorithm;
+    if (algorithm == OverlapAlgorithm.ADAPTIVE) {
+      algorithm = projectSize < bruteForceCutoff
+          ? OverlapAlgorithm.BRUTE_FORCE : OverlapAlgorithm.SWEEP_LINE;
+    }
+    OverlapEngine overlapEngine = overlapEngines.get(algorithm);
+    if (overlapEngine == null) {
+      throw new IllegalStateException("No engine for " + algorithm);
+    }
+    return overlapEngine;
+  }
+
+  public RejectSink getRejectSink() {
+    return rejectSink;
+  }
+
+  public void setRejectSink(RejectSink rejectSink) {
+    this.rejectSink = rejectSink;
+  }
+
+  /**
+   * Sets the date "NULL" dates of the parsed lines stand for.
+   *
+   * @param asOf The as-of date, or null for the day it is set.
+   */
+  public void setAsOf(LocalDate asOf) {
+    dateParser = new DateParser(asOf);
+  }
+
+  public PipelineStats getPipelineStats() {
+    return pipelineStats;
+  }
+
+  public void setPipelineStats(PipelineStats pipelineStats) {
+    this.pipelineStats = pipelineStats;
+  }
 
   /**
    * Parses a line of CSV data into an EmployeeWithProject object.
@@ -28,6 +136,23 @@ public class SolutionsService {
    * @return An EmployeeWithProject object representing the parsed CSV data, or null if parsing fails.
    */
   public EmployeeWithProject returnSolutionFromLine(String[] line) {
+    return returnSolutionFromLine(line, 0);
+  }
+
+  /**
+   * Parses a line of CSV data into an EmployeeWithProject object, handing it to the RejectSink
+   * if it can't be parsed.
+   *
+   * @param line       An array containing the CSV elements.
+   * @param lineNumber The 1-based number of the line, or 0 if unknown.
+   * @return An EmployeeWithProject object representing the parsed CSV data, or null if parsing fails.
+   */
+  public EmployeeWithProject returnSolutionFromLine(String[] line, long lineNumber) {
+    // a short line has no DateTo to read
+    if (line.length < 4) {
+      rejectSink.reject(RejectReason.WRONG_COLUMN_COUNT, lineNumber, String.join(", ", line));
+      return null;
+    }
     String csvUserId = line[0];
     String csvProjectId = line[1];
     String csvDateFrom = line[2];
@@ -35,44 +160,31 @@ public class SolutionsService {
 
     // check if UserId and projectId can be parsed to a Long
     if (!canParseLong(csvUserId) || !canParseLong(csvProjectId)) {
-      // if can't be parsed - print ignore message and ignore line
-      printIgnoredLine(csvUserId, csvProjectId, csvDateFrom, csvDateTo);
+      // if can't be parsed - reject line
+      rejectSink.reject(RejectReason.BAD_ID, lineNumber, String.join(", ", line));
       return null;
     }
 
-    // check if DateFrom and DateTo can be parsed to a LocalDate object
-    if (!canParseDate(csvDateFrom) || !canParseDate(csvDateTo)) {
-      // if can't be parsed - ignore line
-      printIgnoredLine(csvUserId, csvProjectId, csvDateFrom, csvDateTo);
+    // parse DateFrom and DateTo to epoch days in a single pass
+    int dayFrom = dateParser.parseEpochDay(csvDateFrom);
+    int dayTo = dateParser.parseEpochDay(csvDateTo);
+    if (dayFrom == DateParser.INVALID || dayTo == DateParser.INVALID) {
+      // if can't be parsed - reject line
+      rejectSink.reject(RejectReason.BAD_DATE, lineNumber, String.join(", ", line));
       return null;
     }
 
     // parse all csv Strings
     Long userId = Long.parseLong(csvUserId);
     Long projectId = Long.parseLong(csvProjectId);
-    LocalDate dateFrom = parseDate(csvDateFrom);
-    LocalDate dateTo = parseDate(csvDateTo);
+    LocalDate dateFrom = LocalDate.ofEpochDay(dayFrom);
+    LocalDate dateTo = LocalDate.ofEpochDay(dayTo);
 
     // populate EmployeeWithProject object
     return getSolutionFinal(userId, projectId, dateFrom, dateTo);
   }
 
 
-  /**
-   * Prints a message indicating that a line of the CSV data has been ignored.
-   *
-   * @param csvUserId    The user ID from the ignored line.
-   * @param csvProjectId The project ID from the ignored line.
-   * @param csvDateFrom  The start date from the ignored line.
-   * @param csvDateTo    The end date from the ignored line.
-   */
-  private void printIgnoredLine(String csvUserId, String csvProjectId, String csvDateFrom,
-                                String csvDateTo) {
-    System.out.printf("Ignored line with values empId: %s projId: %s From: %s To: %s%n", csvUserId,
-                      csvProjectId, csvDateFrom, csvDateTo);
-  }
-
-
   /**
    * Creates an EmployeeWithProject object with the provided attributes.
    *
@@ -93,43 +205,6 @@ public class SolutionsService {
   }
 
 
-  /**
-   * Parse a String to a LocalDate object.
-   *
-   * @param dateString String to be parsed
-   * @return LocalDate object of the dateString
-   */
-
-  private LocalDate parseDate(String dateString) {
-    if (dateString == null || dateString.equals("NULL")) {
-      //if toDate is null - use LocalDate.now()
-      return LocalDate.now();
-    }
-    // TO DO: Include additional DateTimeFormats
-    DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    return LocalDate.parse(dateString, dateFormatter);
-  }
-
-
-  /**
-   * Check if a String can be parsed to a LocalDate object.
-   *
-   * @param currDate String to be parsed
-   * @return true if the String can be parsed to a LocalDate, false if not
-   */
-  private static boolean canParseDate(String currDate) {
-    if (currDate == null || currDate.equals("NULL")) {
-      return true;
-    }
-    try {
-      DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-      LocalDate.parse(currDate, dateFormatter);
-      return true;
-    } catch (DateTimeParseException e) {
-      return false;
-    }
-  }
-
   /**
    * Check if a String can be parsed to a Long.
    *
@@ -171,21 +246,8 @@ public class SolutionsService {
     List<SolutionResult> solutionResultList = new ArrayList<>();
     // for each project and it's employee list
     for (Map.Entry<Long, List<Employee>> entry : projectsAndUsersMap.entrySet()) {
-      Long projectId = entry.getKey();
-      List<Employee> employeesList = entry.getValue();
-
-      // get the pair of employees with longest overlap
-      LongestPair longestPair = getLongestPeriodForProject(employeesList);
-
-      // populate the SolutionResult for this projectId
-      SolutionResult solutionResult = new SolutionResult();
-      solutionResult.setProjectId(projectId);
-      solutionResult.setEmployeeOneId(longestPair.getEmployeeOneId());
-      solutionResult.setEmployeeTwoId(longestPair.getEmployeeTwoId());
-      solutionResult.setDaysWorkedTogether(longestPair.getOverlapDays());
-
-      // if only one employee has worked on this project - ignore the solution
-      if (solutionResult.getEmployeeOneId() != null && solutionResult.getEmployeeTwoId() != null) {
+      SolutionResult solutionResult = solveProject(entry.getKey(), entry.getValue());
+      if (solutionResult != null) {
         solutionResultList.add(solutionResult);
       }
     }
@@ -193,48 +255,156 @@ public class SolutionsService {
   }
 
   /**
-   * Identifies the pair of employees that worked together for the longest period of time.
+   * Generate a SolutionResult object of a project, the pair of employees
+   * with longest overlay and their overlap days, solving the projects in parallel.
+   * The returned list is identical to the one of the sequential run.
+   *
+   * @param  projectsAndUsersMap Hashmap of a project and all employees that worked on it
+   * @param  pool The ForkJoinPool that solves the projects
+   * @return A List of SolutionResult instances for each project
+   */
+  public List<SolutionResult> getSolutionResultsBasedOnProjects(
+      HashMap<Long, List<Employee>> projectsAndUsersMap, ForkJoinPool pool) {
+    return new ParallelProjectSolver(this).solve(projectsAndUsersMap, pool);
+  }
+
+  /**
+   * Generate a SolutionResult object of each project of a ColumnarDataset, working on its
+   * primitive arrays directly.
+   *
+   * @param  dataset All rows, sorted by project
+   * @return A List of SolutionResult instances for each project, ordered by project ID
+   */
+  public List<SolutionResult> getSolutionResultsBasedOnProjects(ColumnarDataset dataset) {
+    List<SolutionResult> solutionResultList = new ArrayList<>();
+    solve(dataset, solutionResultList::add);
+    return solutionResultList;
+  }
+
+  /**
+   * Solves each project of a ColumnarDataset in turn, handing its SolutionResult to a consumer
+   * as soon as it is found instead of collecting them first.
    *
-   * @param  employeesList List of all Employees that worked on the same project
-   * @return A LongestPair instance with the IDs of the two employees and their overlap period
+   * @param  dataset All rows, sorted by project
+   * @param  resultConsumer Receives the SolutionResult of every project on which two employees
+   *         overlap, ordered by project ID
    */
-  private LongestPair getLongestPeriodForProject(List<Employee> employeesList) {
-    LongestPair longestPair = new LongestPair();
-    int longestOverlap = 0;
-
-    for (int i = 0; i < employeesList.size() - 1; i++) {
-      for (int j = i + 1; j < employeesList.size(); j++) {
-
-        Employee employee1 = employeesList.get(i);
-        Employee employee2 = employeesList.get(j);
-
-        // overlapStarts with the starting date of the employee joining the project last
-        LocalDate overlapStart = employee1.getDateFrom().isAfter(employee2.getDateFrom())
-            ? employee1.getDateFrom() : employee2.getDateFrom();
-        // overlapEnds with the end date of the employee leaving the project first
-        LocalDate overlapEnd = employee1.getDateTo().isBefore(employee2.getDateTo())
-            ? employee1.getDateTo() : employee2.getDateTo();
-
-        // check if there is an overlap between employees
-        if (overlapEnd.isAfter(overlapStart) || overlapEnd.isEqual(overlapStart)) {
-          int overlapDays = (int) ChronoUnit.DAYS.between(overlapStart, overlapEnd);
-          // update the longest overlap if the current overlap is longer
-          if (overlapDays > longestOverlap) {
-            longestOverlap = overlapDays;
-
-            // update the LongestPair object with the new longest overlap and employee IDs
-            longestPair.setOverlapDays(longestOverlap);
-            longestPair.setEmployeeOneId(employee1.getEmployeeId());
-            longestPair.setEmployeeTwoId(employee2.getEmployeeId());
-          }
-        }
+  public void solve(ColumnarDataset dataset, Consumer<SolutionResult> resultConsumer) {
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      SolutionResult solutionResult = solveProject(dataset, project);
+      if (solutionResult != null) {
+        resultConsumer.accept(solutionResult);
       }
     }
-    return longestPair;
   }
 
   /**
-   * Collects all employees that worked on the same project
+   * Generate a SolutionResult object of each project of a ColumnarDataset, solving the projects
+   * in parallel. The returned list is identical to the one of the sequential run.
+   *
+   * @param  dataset All rows, sorted by project
+   * @param  pool The ForkJoinPool that solves the projects
+   * @return A List of SolutionResult instances for each project, ordered by project ID
+   */
+  public List<SolutionResult> getSolutionResultsBasedOnProjects(ColumnarDataset dataset,
+                                                                ForkJoinPool pool) {
+    return new ParallelProjectSolver(this).solve(dataset.projectCount(), dataset::projectSize,
+                                                 project -> solveProject(dataset, project), pool);
+  }
+
+  /**
+   * Generate a SolutionResult object of a single project.
+   *
+   * @param  projectId ID of the project
+   * @param  employeesList List of all Employees that worked on the project
+   * @return The SolutionResult of the project, or null if no two employees overlap on it
+   */
+  SolutionResult solveProject(Long projectId, List<Employee> employeesList) {
+    // convert dates to epoch days once, so the overlap math is plain int subtraction
+    int size = employeesList.size();
+    long[] employeeIds = new long[size];
+    int[] dayFrom = new int[size];
+    int[] dayTo = new int[size];
+    for (int i = 0; i < size; i++) {
+      Employee employee = employeesList.get(i);
+      employeeIds[i] = employee.getEmployeeId();
+      dayFrom[i] = (int) employee.getDateFrom().toEpochDay();
+      dayTo[i] = (int) employee.getDateTo().toEpochDay();
+    }
+
+    // get the pair of employees with longest overlap
+    return solveProject(projectId, employeeIds, dayFrom, dayTo, 0, size);
+  }
+
+  /**
+   * Generate a SolutionResult object of a single project of a ColumnarDataset.
+   *
+   * @param  dataset All rows, sorted by project
+   * @param  project Index of the project in the dataset
+   * @return The SolutionResult of the project, or null if no two employees overlap on it
+   */
+  public SolutionResult solveProject(ColumnarDataset dataset, int project) {
+    return solveProject(dataset.projectIdAt(project), dataset.employeeIdColumn(),
+                        dataset.fromDayColumn(), dataset.toDayColumn(),
+                        dataset.projectStart(project), dataset.projectEnd(project));
+  }
+
+  /**
+   * Generate a SolutionResult object of a single project whose rows are a slice of primitive
+   * arrays.
+   *
+   * @param  projectId ID of the project
+   * @param  employeeIds Employee ID of each row
+   * @param  dayFrom Start epoch day of each row
+   * @param  dayTo End epoch day of each row
+   * @param  start Index of the first row of the project
+   * @param  end Index after the last row of the project
+   * @return The SolutionResult of the project, or null if no two employees overlap on it
+   */
+  SolutionResult solveProject(long projectId, long[] employeeIds, int[] dayFrom, int[] dayTo,
+                              int start, int end) {
+    OverlapEngine overlapEngine = selectEngine(end - start);
+    if (pipelineStats == null) {
+      return toSolutionResult(projectId, overlapEngine.findLongestPair(employeeIds, dayFrom,
+                                                                       dayTo, start, end));
+    }
+    // time every project, per engine and size, and keep the largest project seen so far, the
+    // one that bounds a parallel run
+    long startNanos = System.nanoTime();
+    LongestPair longestPair =
+        overlapEngine.findLongestPair(employeeIds, dayFrom, dayTo, start, end);
+    long solveNanos = System.nanoTime() - startNanos;
+    pipelineStats.recordEngine(overlapEngine.getAlgorithm(), end - start, solveNanos);
+    if (end - start > pipelineStats.getLargestProjectSize()) {
+      pipelineStats.recordLargestProject(projectId, end - start, solveNanos);
+    }
+    return toSolutionResult(projectId, longestPair);
+  }
+
+  /**
+   * Populates the SolutionResult of a project from its longest pair.
+   *
+   * @param  projectId ID of the project
+   * @param  longestPair The pair of employees with longest overlap on the project
+   * @return The SolutionResult of the project, or null if no two employees overlap on it
+   */
+  private SolutionResult toSolutionResult(Long projectId, LongestPair longestPair) {
+    // populate the SolutionResult for this projectId
+    SolutionResult solutionResult = new SolutionResult();
+    solutionResult.setProjectId(projectId);
+    solutionResult.setEmployeeOneId(longestPair.getEmployeeOneId());
+    solutionResult.setEmployeeTwoId(longestPair.getEmployeeTwoId());
+    solutionResult.setDaysWorkedTogether(longestPair.getOverlapDays());
+
+    // if only one employee has worked on this project - ignore the solution
+    if (solutionResult.getEmployeeOneId() == null || solutionResult.getEmployeeTwoId() == null) {
+      return null;
+    }
+    return solutionResult;
+  }
+
+  /**
+   * Collects all employees that worked on the same project, keeping only the given projects.
    *
    * @param  employeeWithProjectList List of all EmployeesWithProject
    * @param  projectIds Set of all project IDs
@@ -243,20 +413,52 @@ public class SolutionsService {
   public HashMap<Long, List<Employee>> filterUsersInProject(
       List<EmployeeWithProject> employeeWithProjectList,
       Set<Long> projectIds) {
+    // group all rows in a single pass instead of rescanning the list for every project
+    HashMap<Long, List<Employee>> groupedByProject = groupEmployeesByProject(
+        employeeWithProjectList);
     HashMap<Long, List<Employee>> projectsAndUsersMap = new HashMap<>();
-    // for each project
     for (Long currProjectId : projectIds) {
-      //list of employees who worked on the project
-      List<Employee> filteredSolutionsPerProject = new ArrayList<>();
-      for (EmployeeWithProject employeeWithProject : employeeWithProjectList) {
-        //if employee worked on the project
-        if (employeeWithProject.getProjectId().equals(currProjectId)) {
-          // add to list of employees
-          filteredSolutionsPerProject.add(employeeWithProject);
-        }
+      List<Employee> filteredSolutionsPerProject = groupedByProject.get(currProjectId);
+      projectsAndUsersMap.put(currProjectId, filteredSolutionsPerProject != null
+          ? filteredSolutionsPerProject : new ArrayList<>());
+    }
+    return projectsAndUsersMap;
+  }
+
+  /**
+   * Collects all employees that worked on the same project in a single pass over the CsvReader
+   * output, without a separate unique project IDs step. Rows keep their order within a project.
+   *
+   * @param  employeeWithProjectList List of all EmployeesWithProject
+   * @return A hashmap of project IDs and the employees working on each project.
+   */
+  public HashMap<Long, List<Employee>> groupEmployeesByProject(
+      List<EmployeeWithProject> employeeWithProjectList) {
+    // first pass: give each project a dense index and count its rows, keyed by primitive longs
+    LongIntHashMap projectIndexes = new LongIntHashMap();
+    int[] rowCounts = new int[16];
+    for (EmployeeWithProject employeeWithProject : employeeWithProjectList) {
+      int projectIndex = projectIndexes.putIfAbsent(employeeWithProject.getProjectId(),
+                                                    projectIndexes.size());
+      if (projectIndex == rowCounts.length) {
+        rowCounts = Arrays.copyOf(rowCounts, rowCounts.length * 2);
+      }
+      rowCounts[projectIndex]++;
+    }
+
+    // second pass: add each row to its pre-sized project list
+    List<List<Employee>> employeesByIndex = new ArrayList<>(projectIndexes.size());
+    HashMap<Long, List<Employee>> projectsAndUsersMap = new HashMap<>(
+        (int) (projectIndexes.size() / 0.75f) + 1);
+    for (EmployeeWithProject employeeWithProject : employeeWithProjectList) {
+      int projectIndex = projectIndexes.get(employeeWithProject.getProjectId(), -1);
+      if (projectIndex == employeesByIndex.size()) {
+        // first row of this project - reuse its boxed id as the map key
+        List<Employee> employees = new ArrayList<>(rowCounts[projectIndex]);
+        employeesByIndex.add(employees);
+        projectsAndUsersMap.put(employeeWithProject.getProjectId(), employees);
       }
-      // populate map
-      projectsAndUsersMap.put(currProjectId, filteredSolutionsPerProject);
+      employeesByIndex.get(projectIndex).add(employeeWithProject);
     }
     return projectsAndUsersMap;
   }
@@ -0,0 +1,140 @@
+package services;
+
+import java.util.Arrays;
+
+import org.springframework.stereotype.Service;
+
+import models.ColumnarDataset;
+import utils.LongIntHashMap;
+
+/**
+ * Merges the overlapping or adjacent stints of each employee on a project into one row, before
+ * the projects are solved. Exports often repeat a stint or split it into pieces; unmerged, those
+ * rows make n larger for the pair search and pair an employee with themselves.
+ *
+ * <p>Rows cover the half-open day range [dayFrom, dayTo), as everywhere in the overlap math, so
+ * two stints are adjacent when one starts on the day the other ends. A merged stint runs from
+ * the earliest start to the latest end of its rows and takes the place of its first row in file
+ * order, so the rows of a project keep the order that decides ties between equally long pairs.
+ */
+@Service
+public class StintNormalizer {
+
+  /**
+   * Merges the stints of each employee on each project, in one sort-and-merge pass per project.
+   *
+   * @param dataset All rows, sorted by project
+   * @return A dataset with non-overlapping, non-adjacent stints per employee and project; the
+   *         dataset itself if there was nothing to merge
+   */
+  public ColumnarDataset normalize(ColumnarDataset dataset) {
+    int size = dataset.size();
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+
+    // number the employees densely, so an employee and a row pack into one long
+    LongIntHashMap denseIds = new LongIntHashMap();
+    int[] denseEmployee = new int[size];
+    for (int row = 0; row < size; row++) {
+      denseEmployee[row] = denseIds.putIfAbsent(employeeIds[row], denseIds.size());
+    }
+
+    // merged stint of each row, in the rows' places: kept[row] marks the first row of a stint
+    boolean[] kept = new boolean[size];
+    int[] mergedTo = new int[size];
+    int[] mergedFrom = new int[size];
+    int keptRows = 0;
+    long[] keys = new long[16];
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      int start = dataset.projectStart(project);
+      int end = dataset.projectEnd(project);
+      if (keys.length < end - start) {
+        keys = new long[end - start];
+      }
+      // group the rows by employee, in file order within an employee
+      for (int row = start; row < end; row++) {
+        keys[row - start] = ((long) denseEmployee[row] << 32) | (row - start);
+      }
+      Arrays.sort(keys, 0, end - start);
+
+      for (int group = 0; group < end - start; ) {
+        int employee = (int) (keys[group] >>> 32);
+        int groupEnd = group + 1;
+        while (groupEnd < end - start && (int) (keys[groupEnd] >>> 32) == employee) {
+          groupEnd++;
+        }
+        keptRows += mergeStints(keys, group, groupEnd, start, dayFrom, dayTo, kept, mergedFrom,
+                                mergedTo);
+        group = groupEnd;
+      }
+    }
+    if (keptRows == size) {
+      return dataset;
+    }
+
+    ColumnarDataset.Builder builder = new ColumnarDataset.Builder(keptRows);
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      long projectId = dataset.projectIdAt(project);
+      for (int row = dataset.projectStart(project); row < dataset.projectEnd(project); row++) {
+        if (kept[row]) {
+          builder.add(employeeIds[row], projectId, mergedFrom[row], mergedTo[row]);
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Merges the stints of one employee on a project, whose rows, relative to the project's first
+   * row start, are the low bits of keys[from, to). The stints are sorted by start day, reusing
+   * keys, and every stint that starts no later than the merged one before it ends is joined to
+   * it. The merged stints are marked in kept, mergedFrom and mergedTo.
+   *
+   * @return The number of merged stints
+   */
+  private static int mergeStints(long[] keys, int from, int to, int start, int[] dayFrom,
+                                 int[] dayTo, boolean[] kept, int[] mergedFrom, int[] mergedTo) {
+    if (to - from == 1) {
+      int row = start + (int) keys[from];
+      keep(row, dayFrom[row], dayTo[row], kept, mergedFrom, mergedTo);
+      return 1;
+    }
+    // order the employee's rows by start day, then by row
+    for (int k = from; k < to; k++) {
+      int row = start + (int) keys[k];
+      keys[k] = ((long) dayFrom[row] << 32) | (row - start);
+    }
+    Arrays.sort(keys, from, to);
+
+    int stints = 0;
+    int first = -1;
+    int stintFrom = 0;
+    int stintTo = 0;
+    for (int k = from; k < to; k++) {
+      int row = start + (int) keys[k];
+      if (first >= 0 && dayFrom[row] <= stintTo) {
+        // overlapping or adjacent: extend the stint, which keeps its earliest row
+        stintTo = Math.max(stintTo, dayTo[row]);
+        first = Math.min(first, row);
+        continue;
+      }
+      if (first >= 0) {
+        keep(first, stintFrom, stintTo, kept, mergedFrom, mergedTo);
+        stints++;
+      }
+      first = row;
+      stintFrom = dayFrom[row];
+      stintTo = dayTo[row];
+    }
+    keep(first, stintFrom, stintTo, kept, mergedFrom, mergedTo);
+    return stints + 1;
+  }
+
+  private static void keep(int row, int stintFrom, int stintTo, boolean[] kept, int[] mergedFrom,
+                           int[] mergedTo) {
+    kept[row] = true;
+    mergedFrom[row] = stintFrom;
+    mergedTo[row] = stintTo;
+  }
+}
@@ -0,0 +1,184 @@
+package services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Service;
+
+import models.SolutionResult;
+import utils.LongIntHashMap;
+
+/**
+ * Solves the projects of a CSV stream, such as standard input or a pipe, without materializing
+ * the rows as a list.
+ *
+ * <p>Byte chunks of the stream are parsed in place by MappedCsvParser and every row goes
+ * straight into the accumulator of its project, which keeps only the project's intervals in
+ * primitive arrays. A project is solved once its rows are complete: at the end of the stream, or,
+ * if the stream is grouped by project, as soon as the next project starts, after which its
+ * intervals are released.
+ */
+@Service
+public class StreamingSolutionsService {
+  private final MappedCsvParser mappedCsvParser = new MappedCsvParser();
+  private final SolutionsService solutionsService;
+
+  public StreamingSolutionsService() {
+    this(new SolutionsService());
+  }
+
+  public StreamingSolutionsService(SolutionsService solutionsService) {
+    this.solutionsService = solutionsService;
+  }
+
+  /**
+   * Sets where the lines that can't be parsed go.
+   *
+   * @param rejectSink The RejectSink.
+   */
+  public void setRejectSink(RejectSink rejectSink) {
+    mappedCsvParser.setRejectSink(rejectSink);
+  }
+
+  /**
+   * Sets the date "NULL" dates stand for.
+   *
+   * @param asOf The as-of date, or null for the day each parse starts.
+   */
+  public void setAsOf(LocalDate asOf) {
+    mappedCsvParser.setAsOf(asOf);
+  }
+
+  /**
+   * Generate a SolutionResult object of each project of a CSV stream.
+   *
+   * @param  inputStream The CSV data, read to its end but not closed
+   * @return A List of SolutionResult instances for each project, ordered by project ID
+   * @throws IOException If an I/O error occurs while reading the stream
+   */
+  public List<SolutionResult> getSolutionResults(InputStream inputStream) throws IOException {
+    List<SolutionResult> solutionResultList = new ArrayList<>();
+    solveStream(inputStream, false, solutionResultList::add);
+    return solutionResultList;
+  }
+
+  /**
+   * Solves the projects of a CSV stream, handing each SolutionResult to a consumer as soon as
+   * its project is complete.
+   *
+   * @param  inputStream The CSV data, read to its end but not closed
+   * @param  grouped Whether all rows of a project are consecutive in the stream. Projects are
+   *         then solved and released as soon as the next project starts, and results come in
+   *         stream order; otherwise all projects are solved at the end, ordered by project ID
+   * @param  resultConsumer Receives the SolutionResult of every project on which two employees
+   *         overlap
+   * @throws IOException If an I/O error occurs while reading the stream
+   * @throws IllegalArgumentException If grouped is set and a project appears again after the
+   *         next project started
+   */
+  public void solveStream(InputStream inputStream, boolean grouped,
+                          Consumer<SolutionResult> resultConsumer) throws IOException {
+    ProjectAccumulators accumulators = new ProjectAccumulators(grouped, resultConsumer);
+    mappedCsvParser.parseStream(inputStream, accumulators);
+    accumulators.finish();
+  }
+
+  /** Routes every row to the accumulator of its project and solves finished projects. */
+  private class ProjectAccumulators implements RowSink {
+    private final boolean grouped;
+    private final Consumer<SolutionResult> resultConsumer;
+    private final LongIntHashMap projectIndexes = new LongIntHashMap();
+    private final List<ProjectAccumulator> accumulators = new ArrayList<>();
+    // accumulator of the previous row, so runs of rows of one project skip the map lookup
+    private ProjectAccumulator current;
+
+    ProjectAccumulators(boolean grouped, Consumer<SolutionResult> resultConsumer) {
+      this.grouped = grouped;
+      this.resultConsumer = resultConsumer;
+    }
+
+    @Override
+    public void accept(long employeeId, long projectId, int dayFrom, int dayTo) {
+      if (current == null || current.projectId != projectId) {
+        if (grouped && current != null) {
+          solve(current);
+        }
+        int index = projectIndexes.putIfAbsent(projectId, accumulators.size());
+        if (index == accumulators.size()) {
+          accumulators.add(new ProjectAccumulator(projectId));
+        }
+        current = accumulators.get(index);
+        if (current.isReleased()) {
+          throw new IllegalArgumentException(
+              "Input is not grouped by project, project " + projectId + " appears again");
+        }
+      }
+      current.add(employeeId, dayFrom, dayTo);
+    }
+
+    void finish() {
+      if (grouped) {
+        if (current != null) {
+          solve(current);
+        }
+        return;
+      }
+      // solve every project in project ID order
+      accumulators.sort((a, b) -> Long.compare(a.projectId, b.projectId));
+      for (ProjectAccumulator accumulator : accumulators) {
+        solve(accumulator);
+      }
+    }
+
+    private void solve(ProjectAccumulator accumulator) {
+      SolutionResult solutionResult = solutionsService.solveProject(
+          accumulator.projectId, accumulator.employeeIds, accumulator.dayFrom,
+          accumulator.dayTo, 0, accumulator.size);
+      accumulator.release();
+      if (solutionResult != null) {
+        resultConsumer.accept(solutionResult);
+      }
+    }
+  }
+
+  /** The intervals of one project, in stream order. */
+  private static class ProjectAccumulator {
+    private final long projectId;
+    private long[] employeeIds = new long[4];
+    private int[] dayFrom = new int[4];
+    private int[] dayTo = new int[4];
+    private int size;
+
+    ProjectAccumulator(long projectId) {
+      this.projectId = projectId;
+    }
+
+    void add(long employeeId, int from, int to) {
+      if (size == employeeIds.length) {
+        int capacity = size + (size >> 1);
+        employeeIds = Arrays.copyOf(employeeIds, capacity);
+        dayFrom = Arrays.copyOf(dayFrom, capacity);
+        dayTo = Arrays.copyOf(dayTo, capacity);
+      }
+      employeeIds[size] = employeeId;
+      dayFrom[size] = from;
+      dayTo[size] = to;
+      size++;
+    }
+
+    boolean isReleased() {
+      return employeeIds == null;
+    }
+
+    void release() {
+      employeeIds = null;
+      dayFrom = null;
+      dayTo = null;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package services;
+
+import java.util.Arrays;
+
+import org.springframework.stereotype.Service;
+
+import models.LongestPair;
+
+/**
+ * Finds the pair of employees with the longest overlap on a project in O(n log n) by sweeping
+ * over the employees sorted by dateFrom while keeping the furthest dateTo seen so far.
+ *
+ * <p>The result is identical to the brute-force nested loop of BruteForceOverlapEngine,
+ * including which pair is reported when several pairs share the longest overlap: the first pair
+ * (i, j) with i &lt; j in list order.
+ */
+@Service
+public class SweepLineOverlapFinder implements OverlapEngine {
+
+  @Override
+  public OverlapAlgorithm getAlgorithm() {
+    return OverlapAlgorithm.SWEEP_LINE;
+  }
+
+  @Override
+  public LongestPair findLongestPair(long[] employeeIds, int[] dayFrom, int[] dayTo, int start,
+                                     int end) {
+    LongestPair longestPair = new LongestPair();
+    int size = end - start;
+    if (size < 2) {
+      return longestPair;
+    }
+
+    // sort rows by dateFrom, the row index breaks ties
+    int[] order = sortByDateFrom(dayFrom, start, end, null, size);
+
+    // sweep: every earlier row started before the current one, so the best partner among
+    // them is the one with the furthest dateTo
+    int longestOverlap = 0;
+    int furthestEnd = dayTo[order[0]];
+    for (int k = 1; k < size; k++) {
+      int current = order[k];
+      int overlapDays = Math.min(furthestEnd, dayTo[current]) - dayFrom[current];
+      if (overlapDays > longestOverlap) {
+        longestOverlap = overlapDays;
+      }
+      furthestEnd = Math.max(furthestEnd, dayTo[current]);
+    }
+
+    // no pair of employees overlaps for at least one day
+    if (longestOverlap == 0) {
+      return longestPair;
+    }
+
+    int first = findFirstEmployeeInLongestPair(dayFrom, dayTo, start, end, longestOverlap);
+    int second = findPartner(dayFrom, dayTo, end, first, longestOverlap);
+
+    longestPair.setOverlapDays(longestOverlap);
+    longestPair.setEmployeeOneId(employeeIds[first]);
+    longestPair.setEmployeeTwoId(employeeIds[second]);
+    return longestPair;
+  }
+
+  /**
+   * Finds the lowest row of an employee that overlaps some other employee for exactly
+   * longestOverlap days. Only rows whose own period is at least longestOverlap days long
+   * can take part in such a pair, so the check is done among those candidates only.
+   *
+   * @param dayFrom        Start epoch days by row.
+   * @param dayTo          End epoch days by row.
+   * @param start          First row of the project.
+   * @param end            Row just past the last row of the project.
+   * @param longestOverlap The longest overlap found by the sweep.
+   * @return The row of the first employee of the longest pair.
+   */
+  private int findFirstEmployeeInLongestPair(int[] dayFrom, int[] dayTo, int start, int end,
+                                             int longestOverlap) {
+    boolean[] candidate = new boolean[end - start];
+    int candidates = 0;
+    for (int i = start; i < end; i++) {
+      if (dayTo[i] - dayFrom[i] >= longestOverlap) {
+        candidate[i - start] = true;
+        candidates++;
+      }
+    }
+    int[] order = sortByDateFrom(dayFrom, start, end, candidate, candidates);
+
+    int first = Integer.MAX_VALUE;
+    int furthestEnd = Integer.MIN_VALUE;
+    for (int k = 0; k < candidates; k++) {
+      int current = order[k];
+      // a candidate that started earlier overlaps long enough if it ends late enough
+      boolean matchesEarlier = k > 0 && furthestEnd - dayFrom[current] >= longestOverlap;
+      // of the candidates that started later, the next one in order starts first
+      boolean matchesLater = k < candidates - 1
+          && dayTo[current] - dayFrom[order[k + 1]] >= longestOverlap;
+      if ((matchesEarlier || matchesLater) && current < first) {
+        first = current;
+      }
+      furthestEnd = Math.max(furthestEnd, dayTo[current]);
+    }
+    return first;
+  }
+
+  /**
+   * Finds the lowest row of an employee that overlaps the given one for exactly
+   * longestOverlap days. Every such partner comes after the given row.
+   *
+   * @param dayFrom        Start epoch days by row.
+   * @param dayTo          End epoch days by row.
+   * @param end            Row just past the last row of the project.
+   * @param first          The row of the first employee of the longest pair.
+   * @param longestOverlap The longest overlap found by the sweep.
+   * @return The row of the second employee of the longest pair.
+   */
+  private int findPartner(int[] dayFrom, int[] dayTo, int end, int first, int longestOverlap) {
+    for (int j = first + 1; j < end; j++) {
+      int overlapDays = Math.min(dayTo[first], dayTo[j]) - Math.max(dayFrom[first], dayFrom[j]);
+      if (overlapDays == longestOverlap) {
+        return j;
+      }
+    }
+    throw new IllegalStateException("No partner found for employee at row " + first);
+  }
+
+  /**
+   * Sorts the rows of [start, end) by their start day, using the row itself to break ties.
+   *
+   * @param dayFrom Start epoch days by row.
+   * @param start   First row to sort.
+   * @param end     Row just past the last row to sort.
+   * @param include Which rows to sort relative to start, or null to sort all of them.
+   * @param count   Number of rows to sort.
+   * @return The sorted rows.
+   */
+  private int[] sortByDateFrom(int[] dayFrom, int start, int end, boolean[] include, int count) {
+    // pack (dayFrom, row - start) into one long so a primitive sort orders both
+    long[] keys = new long[count];
+    int k = 0;
+    for (int i = start; i < end; i++) {
+      if (include == null || include[i - start]) {
+        keys[k++] = ((long) dayFrom[i] << 32) | (i - start);
+      }
+    }
+    Arrays.sort(keys);
+
+    int[] order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = start + (int) keys[i];
+    }
+    return order;
+  }
+}
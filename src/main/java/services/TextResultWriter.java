@@ -0,0 +1,47 @@
+package services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import models.SolutionResult;
+
+/**
+ * Writes SolutionResults as the console lines
+ * "Project ID: 1, Total Days: 10, Emp1: 2, Emp2: 3", the same text the printf of Main wrote.
+ */
+public class TextResultWriter extends ResultWriter {
+  private static final byte[] PROJECT_ID = ascii("Project ID: ");
+  private static final byte[] TOTAL_DAYS = ascii(", Total Days: ");
+  private static final byte[] EMPLOYEE_ONE = ascii(", Emp1: ");
+  private static final byte[] EMPLOYEE_TWO = ascii(", Emp2: ");
+  private static final byte[] LINE_SEPARATOR = ascii(System.lineSeparator());
+
+  public TextResultWriter(OutputStream out) {
+    super(out);
+  }
+
+  /**
+   * Writes a line of text between results, such as the heading of a list.
+   *
+   * @param text The text, without its line break.
+   * @throws IOException If an I/O error occurs while writing a full buffer.
+   */
+  public void writeLine(String text) throws IOException {
+    writeBytes(text.getBytes(StandardCharsets.UTF_8));
+    writeBytes(LINE_SEPARATOR);
+  }
+
+  @Override
+  protected void format(SolutionResult solutionResult) throws IOException {
+    writeBytes(PROJECT_ID);
+    writeDecimal(solutionResult.getProjectId());
+    writeBytes(TOTAL_DAYS);
+    writeDecimal(solutionResult.getDaysWorkedTogether());
+    writeBytes(EMPLOYEE_ONE);
+    writeDecimal(solutionResult.getEmployeeOneId());
+    writeBytes(EMPLOYEE_TWO);
+    writeDecimal(solutionResult.getEmployeeTwoId());
+    writeBytes(LINE_SEPARATOR);
+  }
+}
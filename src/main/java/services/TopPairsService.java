@@ -0,0 +1,174 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.springframework.stereotype.Service;
+
+import models.ColumnarDataset;
+import models.SolutionResult;
+
+/**
+ * Finds the K pairs of employees with the longest overlaps, per project and over the whole
+ * dataset, keeping only K pairs in a bounded min-heap instead of materializing every pair.
+ *
+ * <p>Candidates are pairs of rows of different employees that overlap for at least one day, so
+ * employees with several stints on a project can appear in more than one pair. In a pair the
+ * lower employee ID is employeeOneId. Pairs are ranked by:
+ * <ol>
+ *   <li>more days worked together first,</li>
+ *   <li>then the lower projectId,</li>
+ *   <li>then the lower employeeOneId,</li>
+ *   <li>then the lower employeeTwoId.</li>
+ * </ol>
+ * The same pair of employees overlapping the same days through different rows ranks equal and
+ * is reported once per row pair.
+ */
+@Service
+public class TopPairsService {
+  // best pair first
+  public static final Comparator<SolutionResult> RANKING =
+      Comparator.comparingInt(SolutionResult::getDaysWorkedTogether).reversed()
+                .thenComparing(SolutionResult::getProjectId)
+                .thenComparing(SolutionResult::getEmployeeOneId)
+                .thenComparing(SolutionResult::getEmployeeTwoId);
+
+  private final OverlappingPairEnumerator overlappingPairEnumerator =
+      new OverlappingPairEnumerator();
+
+  /**
+   * Finds the top K pairs of a single project.
+   *
+   * @param  dataset All rows, sorted by project
+   * @param  project Index of the project in the dataset
+   * @param  k Number of pairs to keep
+   * @return Up to K SolutionResults, best first
+   */
+  public List<SolutionResult> getTopPairsForProject(ColumnarDataset dataset, int project, int k) {
+    long projectId = dataset.projectIdAt(project);
+    long[] employeeIds = dataset.employeeIdColumn();
+    BoundedPairHeap heap = new BoundedPairHeap(k);
+    overlappingPairEnumerator.forEachOverlappingPair(
+        dataset.fromDayColumn(), dataset.toDayColumn(), dataset.projectStart(project),
+        dataset.projectEnd(project), (firstRow, secondRow, overlapDays) -> {
+          long one = employeeIds[firstRow];
+          long two = employeeIds[secondRow];
+          if (one != two) {
+            heap.offer(projectId, Math.min(one, two), Math.max(one, two), overlapDays);
+          }
+        });
+    return heap.toSortedList();
+  }
+
+  /**
+   * Finds the top K pairs of every project.
+   *
+   * @param  dataset All rows, sorted by project
+   * @param  k Number of pairs to keep per project
+   * @return Up to K SolutionResults per project, ordered by project ID and best first within a
+   *         project
+   */
+  public List<SolutionResult> getTopPairsPerProject(ColumnarDataset dataset, int k) {
+    List<SolutionResult> solutionResultList = new ArrayList<>();
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      solutionResultList.addAll(getTopPairsForProject(dataset, project, k));
+    }
+    return solutionResultList;
+  }
+
+  /**
+   * Finds the top K pairs of the whole dataset. The global top K is always among the top K of
+   * each project, so only those are offered to the global heap.
+   *
+   * @param  dataset All rows, sorted by project
+   * @param  k Number of pairs to keep
+   * @return Up to K SolutionResults, best first
+   */
+  public List<SolutionResult> getTopPairs(ColumnarDataset dataset, int k) {
+    BoundedPairHeap heap = new BoundedPairHeap(k);
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      for (SolutionResult result : getTopPairsForProject(dataset, project, k)) {
+        heap.offer(result.getProjectId(), result.getEmployeeOneId(), result.getEmployeeTwoId(),
+                   result.getDaysWorkedTogether());
+      }
+    }
+    return heap.toSortedList();
+  }
+
+  /**
+   * Finds the top K pairs of the whole dataset from the top K pairs of every project, as
+   * returned by getTopPairsPerProject with the same or a larger K, without enumerating the pairs
+   * again.
+   *
+   * @param  topPairsPerProject Up to K SolutionResults per project
+   * @param  k Number of pairs to keep
+   * @return Up to K SolutionResults, best first
+   */
+  public List<SolutionResult> getTopPairs(List<SolutionResult> topPairsPerProject, int k) {
+    BoundedPairHeap heap = new BoundedPairHeap(k);
+    for (SolutionResult result : topPairsPerProject) {
+      heap.offer(result.getProjectId(), result.getEmployeeOneId(), result.getEmployeeTwoId(),
+                 result.getDaysWorkedTogether());
+    }
+    return heap.toSortedList();
+  }
+
+  /** Min-heap holding the best K pairs offered so far, with the worst of them at its head. */
+  private static class BoundedPairHeap {
+    // Initial size of the queue, which grows up to the capacity only as pairs are offered
+    private static final int INITIAL_SIZE = 16;
+
+    private final int capacity;
+    private final PriorityQueue<SolutionResult> heap;
+
+    BoundedPairHeap(int capacity) {
+      if (capacity < 1) {
+        throw new IllegalArgumentException("K must be at least 1, was " + capacity);
+      }
+      this.capacity = capacity;
+      this.heap = new PriorityQueue<>(Math.min(capacity, INITIAL_SIZE), RANKING.reversed());
+    }
+
+    void offer(long projectId, long employeeOneId, long employeeTwoId, int days) {
+      if (heap.size() == capacity
+          && !isBetter(projectId, employeeOneId, employeeTwoId, days, heap.peek())) {
+        // only create a SolutionResult for pairs that make it into the heap
+        return;
+      }
+      SolutionResult solutionResult = new SolutionResult();
+      solutionResult.setProjectId(projectId);
+      solutionResult.setEmployeeOneId(employeeOneId);
+      solutionResult.setEmployeeTwoId(employeeTwoId);
+      solutionResult.setDaysWorkedTogether(days);
+      if (heap.size() == capacity) {
+        heap.poll();
+      }
+      heap.add(solutionResult);
+    }
+
+    List<SolutionResult> toSortedList() {
+      List<SolutionResult> sorted = new ArrayList<>(heap);
+      sorted.sort(RANKING);
+      return sorted;
+    }
+
+    /**
+     * Checks whether a pair ranks strictly before the given result, following RANKING.
+     */
+    private static boolean isBetter(long projectId, long employeeOneId, long employeeTwoId,
+                                    int days, SolutionResult worst) {
+      if (days != worst.getDaysWorkedTogether()) {
+        return days > worst.getDaysWorkedTogether();
+      }
+      if (projectId != worst.getProjectId()) {
+        return projectId < worst.getProjectId();
+      }
+      if (employeeOneId != worst.getEmployeeOneId()) {
+        return employeeOneId < worst.getEmployeeOneId();
+      }
+      return employeeTwoId < worst.getEmployeeTwoId();
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package utils;
+
+/**
+ * Open-addressing hash map from primitive long keys to primitive int values. It avoids the boxed
+ * keys, entry objects and boxed values of a HashMap&lt;Long, Integer&gt; when a map holds millions
+ * of entries.
+ *
+ * <p>Keys are stored with linear probing in power-of-two sized arrays. Entries cannot be removed.
+ */
+public class LongIntHashMap {
+  private static final int DEFAULT_CAPACITY = 16;
+  // resize once the table is three quarters full
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private long[] keys;
+  private int[] values;
+  private boolean[] used;
+  private int size;
+  private int resizeAt;
+
+  public LongIntHashMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a map that can hold the given number of entries without resizing.
+   *
+   * @param expectedSize The expected number of entries.
+   */
+  public LongIntHashMap(int expectedSize) {
+    allocate(tableSizeFor(expectedSize));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the value stored for a key.
+   *
+   * @param key          The key to look up.
+   * @param defaultValue The value returned when the key is not present.
+   * @return The value stored for the key, or defaultValue if there is none.
+   */
+  public int get(long key, int defaultValue) {
+    int slot = findSlot(key);
+    return used[slot] ? values[slot] : defaultValue;
+  }
+
+  public boolean containsKey(long key) {
+    return used[findSlot(key)];
+  }
+
+  /**
+   * Stores a value for a key, replacing any previous value.
+   *
+   * @param key   The key.
+   * @param value The value.
+   */
+  public void put(long key, int value) {
+    int slot = insertSlot(key, 0);
+    values[slot] = value;
+  }
+
+  /**
+   * Returns the value stored for a key, storing the given value first if the key is not present.
+   * Useful for dictionary encoding, e.g. {@code map.putIfAbsent(id, map.size())}.
+   *
+   * @param key   The key.
+   * @param value The value stored if the key is not present.
+   * @return The value stored for the key after the call.
+   */
+  public int putIfAbsent(long key, int value) {
+    int slot = insertSlot(key, value);
+    return values[slot];
+  }
+
+  /**
+   * Adds a delta to the value stored for a key, starting from 0 if the key is not present.
+   *
+   * @param key   The key.
+   * @param delta The amount to add.
+   * @return The value stored for the key after the call.
+   */
+  public int addTo(long key, int delta) {
+    int slot = insertSlot(key, 0);
+    values[slot] += delta;
+    return values[slot];
+  }
+
+  /**
+   * Calls the consumer once for every entry, in table order.
+   *
+   * @param consumer Receives each key and its value.
+   */
+  public void forEach(LongIntConsumer consumer) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (used[slot]) {
+        consumer.accept(keys[slot], values[slot]);
+      }
+    }
+  }
+
+  /**
+   * Returns all keys in table order.
+   *
+   * @return A new array with every key of the map.
+   */
+  public long[] keys() {
+    long[] result = new long[size];
+    int k = 0;
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (used[slot]) {
+        result[k++] = keys[slot];
+      }
+    }
+    return result;
+  }
+
+  /** Receives one entry of a LongIntHashMap. */
+  @FunctionalInterface
+  public interface LongIntConsumer {
+    void accept(long key, int value);
+  }
+
+  /**
+   * Returns the slot of a key, or the empty slot where it would be inserted.
+   */
+  private int findSlot(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (used[slot] && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Returns the slot of a key, inserting the key with the initial value if it is not present.
+   */
+  private int insertSlot(long key, int initialValue) {
+    int slot = findSlot(key);
+    if (used[slot]) {
+      return slot;
+    }
+    if (size >= resizeAt) {
+      rehash(keys.length * 2);
+      slot = findSlot(key);
+    }
+    used[slot] = true;
+    keys[slot] = key;
+    values[slot] = initialValue;
+    size++;
+    return slot;
+  }
+
+  private void rehash(int newTableSize) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    boolean[] oldUsed = used;
+    allocate(newTableSize);
+    for (int slot = 0; slot < oldKeys.length; slot++) {
+      if (oldUsed[slot]) {
+        int newSlot = findSlot(oldKeys[slot]);
+        used[newSlot] = true;
+        keys[newSlot] = oldKeys[slot];
+        values[newSlot] = oldValues[slot];
+      }
+    }
+  }
+
+  private void allocate(int tableSize) {
+    keys = new long[tableSize];
+    values = new int[tableSize];
+    used = new boolean[tableSize];
+    resizeAt = (int) (tableSize * LOAD_FACTOR);
+  }
+
+  private static int tableSizeFor(int expectedSize) {
+    long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+    long tableSize = Long.highestOneBit(needed - 1) << 1;
+    if (tableSize > (1 << 30)) {
+      throw new IllegalArgumentException("Too many entries: " + expectedSize);
+    }
+    return (int) Math.max(tableSize, DEFAULT_CAPACITY);
+  }
+
+  private static int hash(long key) {
+    // mix the high bits into the low bits used by the mask (murmur3 finalizer)
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+}
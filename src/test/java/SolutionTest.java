@@ -1,15 +1,62 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 import org.springframework.util.Assert;
 
+import models.CollaborationResult;
+import models.ColumnarDataset;
 import models.Employee;
 import models.EmployeeWithProject;
+import models.EngineStats;
 import models.SolutionResult;
+import models.StageStats;
+import services.AsyncRejectFileSink;
+import services.BinaryResultReader;
+import services.BinaryResultWriter;
+import services.CheckpointStore;
 import services.CsvReader;
+import services.CsvResultWriter;
+import services.DateParser;
+import services.ExternalSortSolutionsService;
+import services.IncrementalSolutionsService;
+import services.IntervalIndex;
+import services.OverlapAlgorithm;
+import services.PairAggregationService;
+import services.PipelineStats;
+import services.QueryService;
+import services.RejectReason;
+import services.ResultFormat;
+import services.ResultWriter;
+import services.SnapshotStore;
+import services.ShardedSolutionsService;
 import services.SolutionsService;
+import services.StintNormalizer;
+import services.StreamingSolutionsService;
+import services.TopPairsService;
 
 public class SolutionTest {
 
@@ -36,8 +83,844 @@ public class SolutionTest {
     }
   }
 
+  private HashMap<Long, List<Employee>> randomProjects(long seed, int projects, int maxSize) {
+    Random random = new Random(seed);
+    HashMap<Long, List<Employee>> projectsAndUsersMap = new HashMap<>();
+    for (long projectId = 0; projectId < projects; projectId++) {
+      // small date ranges and few employee ids produce many ties and duplicate employees
+      List<Employee> employees = new ArrayList<>();
+      int size = random.nextInt(maxSize);
+      for (int i = 0; i < size; i++) {
+        LocalDate dateFrom = LocalDate.of(2020, 1, 1).plusDays(random.nextInt(60));
+        Employee employee = new Employee();
+        employee.setEmployeeId((long) random.nextInt(15));
+        employee.setDateFrom(dateFrom);
+        employee.setDateTo(dateFrom.plusDays(random.nextInt(30)));
+        employees.add(employee);
+      }
+      projectsAndUsersMap.put(projectId, employees);
+    }
+    return projectsAndUsersMap;
+  }
+
+  private List<String> toCsvLines(HashMap<Long, List<Employee>> projectsAndUsersMap) {
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<Long, List<Employee>> entry : projectsAndUsersMap.entrySet()) {
+      for (Employee employee : entry.getValue()) {
+        lines.add(employee.getEmployeeId() + ", " + entry.getKey() + ", "
+                      + employee.getDateFrom() + ", " + employee.getDateTo());
+      }
+    }
+    return lines;
+  }
+
+  private ColumnarDataset toColumnarDataset(HashMap<Long, List<Employee>> projectsAndUsersMap) {
+    ColumnarDataset.Builder builder = new ColumnarDataset.Builder();
+    for (Map.Entry<Long, List<Employee>> entry : projectsAndUsersMap.entrySet()) {
+      for (Employee employee : entry.getValue()) {
+        builder.add(employee.getEmployeeId(), entry.getKey(),
+                    (int) employee.getDateFrom().toEpochDay(),
+                    (int) employee.getDateTo().toEpochDay());
+      }
+    }
+    return builder.build();
+  }
+
+  public void testSweepLineMatchesBruteForce() {
+    System.out.println("Running sweep line vs brute force");
+    HashMap<Long, List<Employee>> projectsAndUsersMap = randomProjects(42, 200, 40);
+
+    SolutionsService bruteForce = new SolutionsService();
+    bruteForce.setOverlapAlgorithm(OverlapAlgorithm.BRUTE_FORCE);
+    SolutionsService sweepLine = new SolutionsService();
+    sweepLine.setOverlapAlgorithm(OverlapAlgorithm.SWEEP_LINE);
+
+    List<SolutionResult> expected = bruteForce.getSolutionResultsBasedOnProjects(
+        projectsAndUsersMap);
+    List<SolutionResult> actual = sweepLine.getSolutionResultsBasedOnProjects(
+        projectsAndUsersMap);
+    Assert.isTrue(expected.equals(actual), "Sweep line results differ from brute force");
+  }
+
+  public void testDateParserMatchesLocalDate() {
+    System.out.println("Running date parser vs LocalDate");
+    DateParser dateParser = new DateParser();
+    List<String> patterns = Arrays.asList("yyyy-MM-dd", "yyyy/MM/dd", "dd/MM/yyyy", "dd.MM.yyyy");
+    List<String> fields = new ArrayList<>();
+    // every day of 1899 - 2101, and the first and last days of the supported years
+    for (LocalDate date = LocalDate.of(1899, 1, 1); date.getYear() < 2102;
+         date = date.plusDays(1)) {
+      fields.add(date.toString());
+    }
+    fields.addAll(Arrays.asList("0001-01-01", "0001-12-31", "9999-01-01", "9999-12-31",
+                                "0000-01-01", "0000-12-31"));
+    // days 29 - 31 of every month, in leap, century and non-leap years, are clamped
+    for (int year : new int[] {1900, 2000, 2019, 2020, 2100, 2400}) {
+      for (int month = 1; month <= 12; month++) {
+        for (int day = 29; day <= 31; day++) {
+          fields.add(String.format("%04d-%02d-%02d", year, month, day));
+        }
+      }
+    }
+    // malformed fields
+    fields.addAll(Arrays.asList("2020-13-01", "2020-00-10", "2020-01-00", "2020-01-32",
+                                "2020-1-01", "2020-01-1", "2020/01-01", "2020-0a-01", "",
+                                " 2020-01-01", "2020-01-01 ", "2020_01_01", "x", "NULLS"));
+
+    for (String pattern : patterns) {
+      DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+      for (String field : fields) {
+        // write each ISO field in the layout of the pattern, keeping malformed ones as they are
+        String text = field;
+        if (field.matches("\\d{4}-\\d{2}-\\d{2}")) {
+          text = pattern.replace("yyyy", field.substring(0, 4))
+                        .replace("MM", field.substring(5, 7))
+                        .replace("dd", field.substring(8, 10));
+        }
+        int expected;
+        try {
+          expected = (int) LocalDate.parse(text, formatter).toEpochDay();
+        } catch (DateTimeParseException e) {
+          expected = DateParser.INVALID;
+        }
+        int actual = dateParser.parseEpochDay(text);
+        // a malformed field of one layout may still be a valid date in another one
+        if (expected != DateParser.INVALID || !isDateInOtherLayout(text, pattern, patterns)) {
+          Assert.isTrue(actual == expected, "Parsed " + text + " as " + actual + " instead of "
+                                                + expected + " in " + pattern);
+        }
+      }
+    }
+  }
+
+  private static boolean isDateInOtherLayout(String text, String pattern, List<String> patterns) {
+    for (String other : patterns) {
+      if (!other.equals(pattern)) {
+        try {
+          LocalDate.parse(text, DateTimeFormatter.ofPattern(other));
+          return true;
+        } catch (DateTimeParseException e) {
+          // not a date in this layout either
+        }
+      }
+    }
+    return false;
+  }
+
+  public void testOverlapEnginesMatchBruteForce() {
+    System.out.println("Running overlap engines vs brute force");
+    HashMap<Long, List<Employee>> projectsAndUsersMap = randomProjects(22, 300, 80);
+
+    SolutionsService bruteForce = new SolutionsService();
+    bruteForce.setOverlapAlgorithm(OverlapAlgorithm.BRUTE_FORCE);
+    List<SolutionResult> expected = bruteForce.getSolutionResultsBasedOnProjects(
+        projectsAndUsersMap);
+    for (OverlapAlgorithm algorithm : OverlapAlgorithm.values()) {
+      SolutionsService solutionsService = new SolutionsService();
+      solutionsService.setOverlapAlgorithm(algorithm);
+      PipelineStats pipelineStats = new PipelineStats();
+      solutionsService.setPipelineStats(pipelineStats);
+      List<SolutionResult> actual = solutionsService.getSolutionResultsBasedOnProjects(
+          projectsAndUsersMap);
+      Assert.isTrue(expected.equals(actual), algorithm + " results differ from brute force");
+
+      // every project is timed once, by the engine chosen for its size
+      long projects = 0;
+      for (EngineStats engineStats : pipelineStats.getEngines()) {
+        projects += engineStats.getProjects();
+        if (algorithm == OverlapAlgorithm.ADAPTIVE) {
+          boolean small =
+              engineStats.getMaxProjectSize() < SolutionsService.DEFAULT_BRUTE_FORCE_CUTOFF;
+          Assert.isTrue(engineStats.getEngine().equals(small ? "brute-force" : "sweep-line"),
+                        "Unexpected engine " + engineStats);
+        } else {
+          Assert.isTrue(engineStats.getEngine().equals(algorithm.toOptionValue()),
+                        "Unexpected engine " + engineStats);
+        }
+      }
+      Assert.isTrue(projects == projectsAndUsersMap.size(), "Wrong number of projects timed");
+    }
+  }
+
+  public void testParallelMatchesSequential() {
+    System.out.println("Running parallel vs sequential");
+    HashMap<Long, List<Employee>> projectsAndUsersMap = randomProjects(7, 2000, 300);
+
+    SolutionsService solutionsService = new SolutionsService();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<SolutionResult> expected = solutionsService.getSolutionResultsBasedOnProjects(
+          projectsAndUsersMap);
+      List<SolutionResult> actual = solutionsService.getSolutionResultsBasedOnProjects(
+          projectsAndUsersMap, pool);
+      Assert.isTrue(expected.equals(actual), "Parallel results differ from sequential");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public void testColumnarMatchesList() throws IOException {
+    System.out.println("Running columnar vs list");
+    String pathAndFile = "src/test/java/checkTwo.csv";
+    CsvReader csvReader = new CsvReader();
+    SolutionsService solutionsService = new SolutionsService();
+
+    HashMap<Long, List<Employee>> projectsAndUsersMap = solutionsService.groupEmployeesByProject(
+        csvReader.readCsv(pathAndFile));
+    List<SolutionResult> expected = new ArrayList<>(
+        solutionsService.getSolutionResultsBasedOnProjects(projectsAndUsersMap));
+    expected.sort(Comparator.comparing(SolutionResult::getProjectId));
+    List<SolutionResult> actual = solutionsService.getSolutionResultsBasedOnProjects(
+        csvReader.readColumnar(pathAndFile));
+    Assert.isTrue(expected.equals(actual), "Columnar results differ from list results");
+  }
+
+  public void testTopPairsMatchAllPairsSorted() {
+    System.out.println("Running top K pairs vs all pairs sorted");
+    HashMap<Long, List<Employee>> projectsAndUsersMap = randomProjects(11, 50, 60);
+    List<SolutionResult> allPairs = new ArrayList<>();
+    for (Map.Entry<Long, List<Employee>> entry : projectsAndUsersMap.entrySet()) {
+      List<Employee> employees = entry.getValue();
+      for (int i = 0; i < employees.size(); i++) {
+        for (int j = i + 1; j < employees.size(); j++) {
+          Employee one = employees.get(i);
+          Employee two = employees.get(j);
+          long days = Math.min(one.getDateTo().toEpochDay(), two.getDateTo().toEpochDay())
+              - Math.max(one.getDateFrom().toEpochDay(), two.getDateFrom().toEpochDay());
+          if (days > 0 && !one.getEmployeeId().equals(two.getEmployeeId())) {
+            SolutionResult pair = new SolutionResult();
+            pair.setProjectId(entry.getKey());
+            pair.setEmployeeOneId(Math.min(one.getEmployeeId(), two.getEmployeeId()));
+            pair.setEmployeeTwoId(Math.max(one.getEmployeeId(), two.getEmployeeId()));
+            pair.setDaysWorkedTogether((int) days);
+            allPairs.add(pair);
+          }
+        }
+      }
+    }
+    allPairs.sort(TopPairsService.RANKING);
+
+    TopPairsService topPairsService = new TopPairsService();
+    ColumnarDataset dataset = toColumnarDataset(projectsAndUsersMap);
+    List<SolutionResult> topPairs = topPairsService.getTopPairs(dataset, 25);
+    Assert.isTrue(allPairs.subList(0, 25).equals(topPairs), "Top K pairs differ from all pairs");
+    Assert.isTrue(topPairs.equals(topPairsService.getTopPairs(
+                      topPairsService.getTopPairsPerProject(dataset, 25), 25)),
+                  "Top K pairs from the per-project lists differ");
+
+    // a K larger than the number of pairs returns them all, without sizing anything by K
+    Assert.isTrue(allPairs.equals(topPairsService.getTopPairs(dataset, Integer.MAX_VALUE)),
+                  "Top pairs with a huge K differ from all pairs");
+    Assert.isTrue(topPairsService.getTopPairsPerProject(dataset, Integer.MAX_VALUE).size()
+                      == allPairs.size(), "Top pairs per project with a huge K are incomplete");
+  }
+
+  public void testSnapshotRoundTrip() throws IOException {
+    System.out.println("Running snapshot round trip");
+    Path directory = Files.createTempDirectory("snapshot");
+    Path source = directory.resolve("checkTwo.csv");
+    Files.copy(Path.of("src/test/java/checkTwo.csv"), source);
+    CsvReader csvReader = new CsvReader();
+    SnapshotStore snapshotStore = new SnapshotStore();
+    try {
+      ColumnarDataset parsed = csvReader.readColumnarWithSnapshot(source.toString(), null);
+      ColumnarDataset loaded = snapshotStore.load(source);
+      Assert.notNull(loaded, "Snapshot was not written");
+      Assert.isTrue(Arrays.equals(parsed.employeeIdColumn(), loaded.employeeIdColumn())
+                        && Arrays.equals(parsed.projectIdColumn(), loaded.projectIdColumn())
+                        && Arrays.equals(parsed.fromDayColumn(), loaded.fromDayColumn())
+                        && Arrays.equals(parsed.toDayColumn(), loaded.toDayColumn())
+                        && Arrays.equals(parsed.projectOffsets(), loaded.projectOffsets()),
+                    "Snapshot differs from the parsed dataset");
+
+      // a changed source invalidates the snapshot
+      Files.writeString(source, "\n1, 1, 2020-01-01, 2020-02-01\n", StandardOpenOption.APPEND);
+      Assert.isNull(snapshotStore.load(source), "Stale snapshot was loaded");
+      Assert.isTrue(csvReader.readColumnarWithSnapshot(source.toString(), null).size()
+                        == parsed.size() + 1, "Changed source was not parsed again");
+
+      // "NULL" dates are stored resolved, so a run as of another day parses the source again
+      int today = new DateParser().getAsOfDay();
+      SnapshotStore.Fingerprint fingerprint = snapshotStore.fingerprint(source);
+      Assert.notNull(snapshotStore.load(source, fingerprint, today), "Snapshot was not rewritten");
+      Assert.isNull(snapshotStore.load(source, fingerprint, today + 1),
+                    "Snapshot of another as-of day was loaded");
+
+      // a source that changes while it is parsed leaves a snapshot that is never loaded
+      Files.writeString(source, "\n2, 1, 2020-01-01, 2020-02-01\n", StandardOpenOption.APPEND);
+      snapshotStore.save(source, fingerprint, today, parsed);
+      Assert.isNull(snapshotStore.load(source), "Snapshot of a changed source was loaded");
+
+      // a snapshot that can't be moved into place leaves the read and the directory intact
+      Files.delete(snapshotStore.snapshotPathFor(source));
+      Files.createDirectory(snapshotStore.snapshotPathFor(source));
+      Files.createFile(snapshotStore.snapshotPathFor(source).resolve("blocker"));
+      ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+      csvReader.setDiagnostics(new PrintStream(diagnostics, true, StandardCharsets.UTF_8));
+      Assert.isTrue(csvReader.readColumnarWithSnapshot(source.toString(), null).size()
+                        == parsed.size() + 2, "Read failed with an unwritable snapshot");
+      Assert.isTrue(diagnostics.toString(StandardCharsets.UTF_8).startsWith("Snapshot of "),
+                    "Unwritable snapshot was not reported");
+      try (Stream<Path> files = Files.list(directory)) {
+        Assert.isTrue(files.count() == 2, "Temporary snapshot file was left behind");
+      }
+      Files.delete(snapshotStore.snapshotPathFor(source).resolve("blocker"));
+    } finally {
+      Files.deleteIfExists(snapshotStore.snapshotPathFor(source));
+      Files.deleteIfExists(source);
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  public void testIncrementalMatchesFullRun() throws IOException {
+    System.out.println("Running incremental vs full run");
+    Path directory = Files.createTempDirectory("incremental");
+    Path source = directory.resolve("checkTwo.csv");
+    Files.copy(Path.of("src/test/java/checkTwo.csv"), source);
+    CsvReader csvReader = new CsvReader();
+    SolutionsService solutionsService = new SolutionsService();
+    IncrementalSolutionsService incrementalSolutionsService = new IncrementalSolutionsService();
+    CheckpointStore checkpointStore = new CheckpointStore();
+    // the fixture has no trailing newline, so its last line is unfinished at first
+    String[] appends = {"\n1, 402, 2014-01-01, 2015-06-01\n",
+                        "7, 900, 2014-01-01, 2014-02-",
+                        "01\n8, 900, 2014-01-15, NULL\n1133, 7, 2019-01-01, 2020-01-01\n",
+                        ""};
+    try {
+      for (String append : appends) {
+        List<SolutionResult> expected = solutionsService.getSolutionResultsBasedOnProjects(
+            csvReader.readColumnar(source.toString()));
+        List<SolutionResult> actual =
+            incrementalSolutionsService.getSolutionResults(source, null);
+        Assert.isTrue(expected.equals(actual), "Incremental results differ from a full run");
+        Files.writeString(source, append, StandardOpenOption.APPEND);
+      }
+    } finally {
+      Files.deleteIfExists(checkpointStore.checkpointPathFor(source));
+      Files.deleteIfExists(source);
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  public void testStreamingMatchesColumnar() throws IOException {
+    System.out.println("Running streaming vs columnar");
+    String pathAndFile = "src/test/java/checkTwo.csv";
+    SolutionsService solutionsService = new SolutionsService();
+    StreamingSolutionsService streamingSolutionsService = new StreamingSolutionsService();
+
+    List<SolutionResult> expected = solutionsService.getSolutionResultsBasedOnProjects(
+        new CsvReader().readColumnar(pathAndFile));
+    try (InputStream inputStream = Files.newInputStream(Path.of(pathAndFile))) {
+      Assert.isTrue(expected.equals(streamingSolutionsService.getSolutionResults(inputStream)),
+                    "Streamed results differ from columnar results");
+    }
+
+    // rows grouped by project are solved as each project ends
+    HashMap<Long, List<Employee>> projectsAndUsersMap = randomProjects(11, 100, 30);
+    List<String> lines = toCsvLines(projectsAndUsersMap);
+    String csv = "EmpId, ProjectId, DateFrom, DateTo\n" + String.join("\n", lines) + "\n";
+    List<SolutionResult> expectedGrouped = new ArrayList<>(
+        solutionsService.getSolutionResultsBasedOnProjects(projectsAndUsersMap));
+    expectedGrouped.sort(Comparator.comparing(SolutionResult::getProjectId));
+    List<SolutionResult> actualGrouped = new ArrayList<>();
+    streamingSolutionsService.solveStream(
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), true,
+        actualGrouped::add);
+    Assert.isTrue(expectedGrouped.equals(actualGrouped),
+                  "Grouped streamed results differ from project map results");
+  }
+
+  public void testExternalSortMatchesInMemory() throws IOException {
+    System.out.println("Running external sort vs in memory");
+    List<String> lines = toCsvLines(randomProjects(5, 2500, 40));
+    Collections.shuffle(lines, new Random(5));
+    Path source = Files.createTempFile("external", ".csv");
+    try {
+      Files.write(source, lines);
+      List<SolutionResult> expected = new SolutionsService().getSolutionResultsBasedOnProjects(
+          new CsvReader().readColumnar(source.toString()));
+      // the smallest budget spills a run every 12288 rows and merges two runs at a time, so
+      // five runs take two passes before the final merge
+      List<SolutionResult> actual = new ExternalSortSolutionsService().getSolutionResults(
+          source, ExternalSortSolutionsService.MIN_MAX_MEMORY);
+      Assert.isTrue(lines.size() > 4 * 12288, "Too few rows to spill five runs");
+      Assert.isTrue(expected.equals(actual), "External sort results differ from in memory");
+      // a larger budget merges all runs at once
+      Assert.isTrue(expected.equals(new ExternalSortSolutionsService().getSolutionResults(
+                        source, 4 * ExternalSortSolutionsService.MIN_MAX_MEMORY)),
+                    "Single-pass external sort results differ from in memory");
+    } finally {
+      Files.deleteIfExists(source);
+    }
+  }
+
+  public void testRejectsCountedByReason() throws IOException {
+    System.out.println("Running reject sink");
+    Path rejects = Files.createTempFile("rejects", ".csv");
+    Path large = Files.createTempFile("large", ".csv");
+    try {
+      AsyncRejectFileSink rejectSink = new AsyncRejectFileSink(rejects);
+      CsvReader csvReader = new CsvReader();
+      csvReader.setRejectSink(rejectSink);
+      csvReader.readColumnar("src/test/java/checkTwo.csv");
+      SolutionsService solutionsService = new SolutionsService();
+      solutionsService.setRejectSink(rejectSink);
+      // a short row used to throw ArrayIndexOutOfBoundsException
+      Assert.isNull(solutionsService.returnSolutionFromLine(new String[] {"1", "2"}, 22),
+                    "Short row was not rejected");
+      rejectSink.close();
+      Assert.isTrue(rejectSink.getCount(RejectReason.BAD_ID) == 4
+                        && rejectSink.getCount(RejectReason.BAD_DATE) == 1
+                        && rejectSink.getCount(RejectReason.WRONG_COLUMN_COUNT) == 1,
+                    "Wrong reject counts");
+      List<String> rejectedLines = Files.readAllLines(rejects);
+      Assert.isTrue(rejectedLines.size() == 6
+                        && rejectedLines.get(0).equals("1,BAD_ID,EmpId,ProjectId,DateFrom,DateTo")
+                        && rejectedLines.get(3).equals("11,BAD_DATE,33,402,13-05-2020,2015-02-01")
+                        && rejectedLines.get(5).equals("22,WRONG_COLUMN_COUNT,1, 2"),
+                    "Wrong reject file");
+
+      // ranges parsed in parallel report line numbers of the whole file
+      List<String> lines = new ArrayList<>();
+      for (int i = 1; i <= 400_000; i++) {
+        lines.add((i % 50_000 == 0 ? "bad" : "1") + ", 1, 2020-01-01, 2020-01-02");
+      }
+      Files.write(large, lines);
+      List<Long> lineNumbers = new ArrayList<>();
+      csvReader.setRejectSink((reason, lineNumber, line) -> lineNumbers.add(lineNumber));
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try {
+        csvReader.readColumnar(large.toString(), pool);
+      } finally {
+        pool.shutdown();
+      }
+      List<Long> expected = new ArrayList<>();
+      for (long i = 50_000; i <= 400_000; i += 50_000) {
+        expected.add(i);
+      }
+      Assert.isTrue(expected.equals(lineNumbers), "Wrong line numbers of parallel rejects");
+    } finally {
+      Files.deleteIfExists(rejects);
+      Files.deleteIfExists(large);
+    }
+  }
+
+  public void testLongestCollaborationMatchesBruteForce() {
+    System.out.println("Running longest collaboration vs brute force");
+    PairAggregationService pairAggregationService = new PairAggregationService();
+    for (long seed = 0; seed < 20; seed++) {
+      ColumnarDataset dataset = toColumnarDataset(randomProjects(seed, 30, 20));
+      assertLongestCollaboration(dataset, pairAggregationService.findLongestCollaboratingPair(
+          dataset));
+    }
+
+    // repeated rows of a pair add up, and equal totals go to the lowest IDs: 9 and 4 work
+    // together 10 + 10 days on project 1, as many as 3 and 7 on projects 1 and 2
+    ColumnarDataset.Builder builder = new ColumnarDataset.Builder();
+    builder.add(9, 1, 0, 10);
+    builder.add(4, 1, 0, 20);
+    builder.add(9, 1, 10, 20);
+    builder.add(7, 1, 30, 40);
+    builder.add(3, 1, 30, 40);
+    builder.add(3, 2, 0, 10);
+    builder.add(7, 2, 5, 15);
+    builder.add(7, 2, 0, 5);
+    ColumnarDataset dataset = builder.build();
+    CollaborationResult collaborationResult =
+        pairAggregationService.findLongestCollaboratingPair(dataset);
+    assertLongestCollaboration(dataset, collaborationResult);
+    Assert.isTrue(collaborationResult.getEmployeeOneId() == 3
+                      && collaborationResult.getEmployeeTwoId() == 7
+                      && collaborationResult.getTotalDaysWorkedTogether() == 20,
+                  "Tie not won by the lowest IDs: " + collaborationResult);
+  }
+
+  /**
+   * Checks a CollaborationResult against the overlap days of every pair of rows, summed per
+   * pair of employees.
+   */
+  private void assertLongestCollaboration(ColumnarDataset dataset,
+                                          CollaborationResult collaborationResult) {
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+    // days per pair of employees, and per pair and project
+    Map<List<Long>, Long> totalDays = new HashMap<>();
+    Map<List<Long>, Long> projectDays = new HashMap<>();
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      for (int i = dataset.projectStart(project); i < dataset.projectEnd(project); i++) {
+        for (int j = i + 1; j < dataset.projectEnd(project); j++) {
+          int days = Math.min(dayTo[i], dayTo[j]) - Math.max(dayFrom[i], dayFrom[j]);
+          if (employeeIds[i] != employeeIds[j] && days > 0) {
+            long low = Math.min(employeeIds[i], employeeIds[j]);
+            long high = Math.max(employeeIds[i], employeeIds[j]);
+            totalDays.merge(Arrays.asList(low, high), (long) days, Long::sum);
+            projectDays.merge(Arrays.asList(low, high, dataset.projectIdAt(project)),
+                              (long) days, Long::sum);
+          }
+        }
+      }
+    }
+    if (totalDays.isEmpty()) {
+      Assert.isNull(collaborationResult, "Found a collaboration without overlaps");
+      return;
+    }
+    List<Long> best = null;
+    for (Map.Entry<List<Long>, Long> entry : totalDays.entrySet()) {
+      List<Long> pair = entry.getKey();
+      if (best == null || entry.getValue() > totalDays.get(best)
+          || (entry.getValue().equals(totalDays.get(best)) && (pair.get(0) < best.get(0)
+              || (pair.get(0).equals(best.get(0)) && pair.get(1) < best.get(1))))) {
+        best = pair;
+      }
+    }
+    Assert.isTrue(collaborationResult.getEmployeeOneId().equals(best.get(0))
+                      && collaborationResult.getEmployeeTwoId().equals(best.get(1))
+                      && collaborationResult.getTotalDaysWorkedTogether() == totalDays.get(best),
+                  "Expected " + best + " with " + totalDays.get(best) + " days instead of "
+                      + collaborationResult);
+    long breakdownDays = 0;
+    for (SolutionResult project : collaborationResult.getProjects()) {
+      Assert.isTrue(project.getDaysWorkedTogether() == projectDays.get(
+                        Arrays.asList(best.get(0), best.get(1), project.getProjectId())),
+                    "Wrong days on project " + project.getProjectId());
+      breakdownDays += project.getDaysWorkedTogether();
+    }
+    Assert.isTrue(breakdownDays == totalDays.get(best), "Breakdown misses projects");
+  }
+
+  public void testPipelineStatsRecordsStages() {
+    System.out.println("Running pipeline stats");
+    ColumnarDataset dataset = toColumnarDataset(randomProjects(6, 200, 30));
+    PipelineStats pipelineStats = new PipelineStats();
+    SolutionsService solutionsService = new SolutionsService();
+    solutionsService.setPipelineStats(pipelineStats);
+
+    PipelineStats.Stage stage = pipelineStats.start("solve");
+    solutionsService.getSolutionResultsBasedOnProjects(dataset);
+    StageStats solveStats = stage.stop(dataset.size(), 0);
+
+    int largestProject = 0;
+    for (int project = 1; project < dataset.projectCount(); project++) {
+      if (dataset.projectSize(project) > dataset.projectSize(largestProject)) {
+        largestProject = project;
+      }
+    }
+    Assert.isTrue(pipelineStats.getStages().size() == 1, "Expected one stage");
+    Assert.isTrue(solveStats.getRows() == dataset.size(), "Wrong stage row count");
+    Assert.isTrue(pipelineStats.getLargestProjectSize() == dataset.projectSize(largestProject),
+                  "Wrong largest project size");
+    Assert.isTrue(pipelineStats.getLargestProjectId() == dataset.projectIdAt(largestProject),
+                  "Wrong largest project");
+    String json = pipelineStats.toJson();
+    Assert.isTrue(json.startsWith("{\"stages\":[{\"name\":\"solve\""),
+                  "Unexpected JSON " + json);
+    Assert.isTrue(json.contains("\"largestProject\":{\"projectId\":"
+                                + dataset.projectIdAt(largestProject)), "Unexpected JSON " + json);
+  }
+
+  public void testQueryServiceMatchesBatch() throws IOException {
+    System.out.println("Running query service vs batch");
+    String pathAndFile = "src/test/java/checkTwo.csv";
+    ColumnarDataset dataset = new CsvReader().readColumnar(pathAndFile);
+    QueryService queryService =
+        new QueryService(new CsvReader(), new SolutionsService(), new TopPairsService());
+    queryService.load(pathAndFile);
+
+    for (SolutionResult expected : new SolutionsService().getSolutionResultsBasedOnProjects(
+        dataset)) {
+      Assert.isTrue(expected.equals(queryService.getBestPair(expected.getProjectId())),
+                    "Best pair differs for project " + expected.getProjectId());
+    }
+    List<SolutionResult> topPairs = queryService.getTopPairs(5);
+    Assert.isTrue(topPairs.equals(new TopPairsService().getTopPairs(dataset, 5)),
+                  "Top pairs differ");
+    Assert.isTrue(topPairs == queryService.getTopPairs(5), "Top pairs not cached");
+    queryService.reload();
+    Assert.isTrue(topPairs != queryService.getTopPairs(5), "Cache kept after reload");
+    Assert.isTrue(topPairs.equals(queryService.getTopPairs(5)), "Top pairs differ after reload");
+    int uncachedK = QueryService.MAX_CACHED_TOP_K + 1;
+    Assert.isTrue(queryService.getTopPairs(uncachedK) != queryService.getTopPairs(uncachedK),
+                  "Top pairs cached for a K above the cache bound");
+
+    // every collaboration of an employee is also found by the collaborator's query
+    SolutionResult best = topPairs.get(0);
+    for (long employeeId : new long[] {best.getEmployeeOneId(), best.getEmployeeTwoId()}) {
+      Assert.isTrue(queryService.getCollaborators(employeeId).stream().anyMatch(
+          collaboration -> collaboration.getEmployeeOneId().equals(best.getEmployeeOneId())
+              && collaboration.getEmployeeTwoId().equals(best.getEmployeeTwoId())
+              && collaboration.getTotalDaysWorkedTogether() >= best.getDaysWorkedTogether()),
+                    "Top pair missing from collaborators of " + employeeId);
+    }
+  }
+
+  public void testIntervalIndexMatchesScan() {
+    System.out.println("Running interval index vs scan");
+    ColumnarDataset dataset = toColumnarDataset(randomProjects(7, 50, 300));
+    IntervalIndex intervalIndex = new IntervalIndex(dataset);
+    long[] employeeIds = dataset.employeeIdColumn();
+    int[] dayFrom = dataset.fromDayColumn();
+    int[] dayTo = dataset.toDayColumn();
+    int firstDay = (int) LocalDate.of(2020, 1, 1).toEpochDay();
+    Random random = new Random(7);
+
+    int pairsActive = 0;
+    int day = firstDay + 40;
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      // rows overlapping a random range, by index and by scan
+      int from = firstDay + random.nextInt(90) - 5;
+      int to = from + 1 + random.nextInt(20);
+      List<Integer> expected = new ArrayList<>();
+      for (int row = dataset.projectStart(project); row < dataset.projectEnd(project); row++) {
+        if (dayFrom[row] < to && dayTo[row] > from) {
+          expected.add(row);
+        }
+      }
+      List<Integer> actual = new ArrayList<>();
+      intervalIndex.forEachOverlappingRow(project, from, to, actual::add);
+      Collections.sort(actual);
+      Assert.isTrue(expected.equals(actual), "Overlapping rows differ on project " + project);
+
+      // pairs of rows of different employees covering a day
+      for (int i = dataset.projectStart(project); i < dataset.projectEnd(project); i++) {
+        for (int j = i + 1; j < dataset.projectEnd(project); j++) {
+          if (employeeIds[i] != employeeIds[j] && dayFrom[i] <= day && day < dayTo[i]
+              && dayFrom[j] <= day && day < dayTo[j]) {
+            pairsActive++;
+          }
+        }
+      }
+    }
+    Assert.isTrue(intervalIndex.findPairsActiveOn(day).size() == pairsActive,
+                  "Active pairs differ");
+
+    // days of employee 3 with every colleague on project 0 within a range
+    long projectId = dataset.projectIdAt(0);
+    int from = firstDay + 10;
+    int to = firstDay + 50;
+    Map<Long, Integer> expectedDays = new HashMap<>();
+    for (int i = dataset.projectStart(0); i < dataset.projectEnd(0); i++) {
+      for (int j = dataset.projectStart(0); j < dataset.projectEnd(0); j++) {
+        int days = Math.min(Math.min(dayTo[i], dayTo[j]), to)
+            - Math.max(Math.max(dayFrom[i], dayFrom[j]), from);
+        if (employeeIds[i] == 3 && employeeIds[j] != 3 && days > 0) {
+          expectedDays.merge(employeeIds[j], days, Integer::sum);
+        }
+      }
+    }
+    List<SolutionResult> overlaps = intervalIndex.findOverlapsWithEmployee(3, projectId, from, to);
+    Assert.isTrue(overlaps.size() == expectedDays.size(), "Colleague count differs");
+    for (SolutionResult overlap : overlaps) {
+      long colleague = overlap.getEmployeeOneId() == 3 ? overlap.getEmployeeTwoId()
+          : overlap.getEmployeeOneId();
+      Assert.isTrue(expectedDays.get(colleague) == overlap.getDaysWorkedTogether(),
+                    "Days differ for colleague " + colleague);
+    }
+  }
+
+  public void testMultipleFilesMatchSingleFile() throws IOException {
+    System.out.println("Running multiple files vs single file");
+    List<String> lines = toCsvLines(randomProjects(8, 300, 40));
+    Collections.shuffle(lines, new Random(8));
+    lines.add("bad, 1, 2020-01-01, 2020-01-02");
+    Path directory = Files.createTempDirectory("inputs");
+    Path single = directory.resolve("all.txt");
+    Path subdirectory = Files.createDirectory(directory.resolve("sub"));
+    Path first = directory.resolve("a.csv");
+    Path second = directory.resolve("b.csv.gz");
+    Path third = subdirectory.resolve("c.csv");
+    try {
+      // every project is spread over the three files
+      int split = lines.size() / 3;
+      Files.write(single, lines);
+      Files.write(first, lines.subList(0, split));
+      try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(second))) {
+        output.write((String.join("\n", lines.subList(split, 2 * split)) + "\n")
+                         .getBytes(StandardCharsets.UTF_8));
+      }
+      Files.write(third, lines.subList(2 * split, lines.size()));
+
+      CsvReader csvReader = new CsvReader();
+      List<String> rejected = new ArrayList<>();
+      csvReader.setRejectSink((reason, lineNumber, line) -> rejected.add(lineNumber + " " + line));
+      List<SolutionResult> expected = new SolutionsService().getSolutionResultsBasedOnProjects(
+          csvReader.readColumnar(single.toString()));
+      List<Path> sources = csvReader.resolveInputs(
+          Arrays.asList(directory.toString(), directory + "/**/*.csv"));
+      Assert.isTrue(sources.equals(Arrays.asList(first, second, third)),
+                    "Unexpected inputs " + sources);
+      ForkJoinPool pool = new ForkJoinPool(3);
+      try {
+        for (ForkJoinPool readPool : Arrays.asList(null, pool)) {
+          List<SolutionResult> actual = new SolutionsService().getSolutionResultsBasedOnProjects(
+              csvReader.readColumnar(sources, readPool));
+          Assert.isTrue(expected.equals(actual), "Merged files differ from a single file");
+        }
+        // the line rejected in each run names its file only if there are several
+        String badLine = "bad, 1, 2020-01-01, 2020-01-02";
+        int thirdLines = lines.size() - 2 * split;
+        Assert.isTrue(rejected.equals(Arrays.asList(
+                          lines.size() + " " + badLine,
+                          thirdLines + " " + third + ": " + badLine,
+                          thirdLines + " " + third + ": " + badLine)),
+                      "Rejects don't name their file: " + rejected);
+      } finally {
+        pool.shutdown();
+      }
+    } finally {
+      for (Path path : Arrays.asList(single, first, second, third, subdirectory, directory)) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  public void testShardedMatchesSingleJvm() throws IOException {
+    System.out.println("Running sharded vs single JVM");
+    List<String> lines = toCsvLines(randomProjects(21, 200, 30));
+    Path file = Files.createTempFile("sharded", ".csv");
+    try {
+      Files.write(file, lines);
+      List<SolutionResult> expected = new SolutionsService().getSolutionResultsBasedOnProjects(
+          new CsvReader().readColumnar(file.toString()));
+      for (int shards : new int[] {1, 3}) {
+        List<SolutionResult> actual = new ShardedSolutionsService()
+            .getSolutionResults(Collections.singletonList(file), shards);
+        Assert.isTrue(expected.equals(actual), shards + " shards differ from a single JVM");
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  public void testResultWritersRoundTrip() throws IOException {
+    System.out.println("Running result writers");
+    List<SolutionResult> solutionResults = new ArrayList<>();
+    long[] ids = {0, 7, -12, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE};
+    for (int i = 0; i < ids.length; i++) {
+      SolutionResult solutionResult = new SolutionResult();
+      solutionResult.setProjectId(ids[i]);
+      solutionResult.setEmployeeOneId(ids[(i + 1) % ids.length]);
+      solutionResult.setEmployeeTwoId(ids[(i + 2) % ids.length]);
+      solutionResult.setDaysWorkedTogether(i == 0 ? Integer.MIN_VALUE : i * 1000 - 1);
+      solutionResults.add(solutionResult);
+    }
+
+    // text, CSV and JSON Lines format the numbers like Formatter and String.valueOf do
+    StringBuilder text = new StringBuilder();
+    StringBuilder csv = new StringBuilder(CsvResultWriter.HEADER + "\n");
+    StringBuilder jsonLines = new StringBuilder();
+    for (SolutionResult result : solutionResults) {
+      text.append(String.format("Project ID: %s, Total Days: %s, Emp1: %s, Emp2: %s%n",
+                                result.getProjectId(), result.getDaysWorkedTogether(),
+                                result.getEmployeeOneId(), result.getEmployeeTwoId()));
+      csv.append(result.getProjectId()).append(',').append(result.getEmployeeOneId())
+         .append(',').append(result.getEmployeeTwoId()).append(',')
+         .append(result.getDaysWorkedTogether()).append('\n');
+      jsonLines.append("{\"projectId\":").append(result.getProjectId())
+               .append(",\"employeeOneId\":").append(result.getEmployeeOneId())
+               .append(",\"employeeTwoId\":").append(result.getEmployeeTwoId())
+               .append(",\"daysWorkedTogether\":").append(result.getDaysWorkedTogether())
+               .append("}\n");
+    }
+    Map<ResultFormat, String> expected = new HashMap<>();
+    expected.put(ResultFormat.TEXT, text.toString());
+    expected.put(ResultFormat.CSV, csv.toString());
+    expected.put(ResultFormat.JSON_LINES, jsonLines.toString());
+    for (Map.Entry<ResultFormat, String> entry : expected.entrySet()) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      try (ResultWriter resultWriter = ResultWriter.create(entry.getKey(), output)) {
+        solutionResults.forEach(resultWriter);
+      }
+      Assert.isTrue(entry.getValue().equals(output.toString(StandardCharsets.US_ASCII)),
+                    "Unexpected " + entry.getKey() + " output");
+    }
+
+    // binary results read back as they were written
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ResultWriter resultWriter = ResultWriter.create(ResultFormat.BINARY, output)) {
+      solutionResults.forEach(resultWriter);
+    }
+    Assert.isTrue(output.size() == Integer.BYTES
+                      + solutionResults.size() * BinaryResultWriter.RECORD_BYTES,
+                  "Unexpected binary size " + output.size());
+    List<SolutionResult> readBack = new ArrayList<>();
+    try (BinaryResultReader reader =
+        new BinaryResultReader(new ByteArrayInputStream(output.toByteArray()))) {
+      for (SolutionResult result = reader.read(); result != null; result = reader.read()) {
+        readBack.add(result);
+      }
+    }
+    Assert.isTrue(solutionResults.equals(readBack), "Binary results differ after reading back");
+  }
+
+  public void testStintNormalizerMergesPerEmployee() {
+    System.out.println("Running stint normalizer");
+    ColumnarDataset dataset = toColumnarDataset(randomProjects(24, 200, 40));
+    ColumnarDataset normalized = new StintNormalizer().normalize(dataset);
+    Assert.isTrue(normalized.size() < dataset.size(), "Expected stints to be merged");
+    Assert.isTrue(normalized.projectCount() == dataset.projectCount(), "Projects changed");
+
+    for (int project = 0; project < dataset.projectCount(); project++) {
+      // the days each employee covers are unchanged
+      Map<Long, Set<Integer>> expectedDays = new HashMap<>();
+      Map<Long, Set<Integer>> actualDays = new HashMap<>();
+      for (int row = dataset.projectStart(project); row < dataset.projectEnd(project); row++) {
+        Set<Integer> days = expectedDays.computeIfAbsent(dataset.employeeIdColumn()[row],
+                                                         id -> new HashSet<>());
+        for (int day = dataset.fromDayColumn()[row]; day < dataset.toDayColumn()[row]; day++) {
+          days.add(day);
+        }
+      }
+      int start = normalized.projectStart(project);
+      int end = normalized.projectEnd(project);
+      for (int row = start; row < end; row++) {
+        Set<Integer> days = actualDays.computeIfAbsent(normalized.employeeIdColumn()[row],
+                                                       id -> new HashSet<>());
+        for (int day = normalized.fromDayColumn()[row]; day < normalized.toDayColumn()[row];
+             day++) {
+          days.add(day);
+        }
+        // and no two stints of an employee overlap or touch
+        for (int other = row + 1; other < end; other++) {
+          if (normalized.employeeIdColumn()[row] == normalized.employeeIdColumn()[other]) {
+            Assert.isTrue(Math.min(normalized.toDayColumn()[row], normalized.toDayColumn()[other])
+                              < Math.max(normalized.fromDayColumn()[row],
+                                         normalized.fromDayColumn()[other]),
+                          "Stints of an employee left unmerged");
+          }
+        }
+      }
+      expectedDays.values().removeIf(Set::isEmpty);
+      actualDays.values().removeIf(Set::isEmpty);
+      Assert.isTrue(expectedDays.equals(actualDays), "Normalized stints cover other days");
+    }
+
+    // "NULL" resolves to the as-of date
+    Assert.isTrue(new DateParser(LocalDate.of(2021, 3, 4)).parseEpochDay("NULL")
+                      == LocalDate.of(2021, 3, 4).toEpochDay(), "NULL is not the as-of day");
+  }
+
   public static void main(String[] args) throws IOException {
     SolutionTest testClass = new SolutionTest();
     testClass.testMethod1();
+    testClass.testSweepLineMatchesBruteForce();
+    testClass.testDateParserMatchesLocalDate();
+    testClass.testOverlapEnginesMatchBruteForce();
+    testClass.testParallelMatchesSequential();
+    testClass.testColumnarMatchesList();
+    testClass.testTopPairsMatchAllPairsSorted();
+    testClass.testSnapshotRoundTrip();
+    testClass.testIncrementalMatchesFullRun();
+    testClass.testStreamingMatchesColumnar();
+    testClass.testExternalSortMatchesInMemory();
+    testClass.testRejectsCountedByReason();
+    testClass.testLongestCollaborationMatchesBruteForce();
+    testClass.testPipelineStatsRecordsStages();
+    testClass.testQueryServiceMatchesBatch();
+    testClass.testIntervalIndexMatchesScan();
+    testClass.testMultipleFilesMatchSingleFile();
+    testClass.testShardedMatchesSingleJvm();
+    testClass.testResultWritersRoundTrip();
+    testClass.testStintNormalizerMergesPerEmployee();
   }
 }